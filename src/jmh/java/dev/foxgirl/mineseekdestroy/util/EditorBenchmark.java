@@ -0,0 +1,123 @@
+package dev.foxgirl.mineseekdestroy.util;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Editor} section processing against detached chunk sections, without a server or world.
+ * Every invocation swaps stone and granite, so the fixture cycles between two states and never runs out of work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EditorBenchmark {
+
+    static {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Param({"dense", "sparse", "single"})
+    public String palette;
+
+    @Param({"full", "partial"})
+    public String coverage;
+
+    private ChunkSection section;
+    private Editor.Task taskReplace;
+    private Editor.Task taskEdit;
+    private Editor.Task taskMiss;
+
+    private static BlockState swap(BlockState state) {
+        if (state == Blocks.STONE.getDefaultState()) return Blocks.GRANITE.getDefaultState();
+        if (state == Blocks.GRANITE.getDefaultState()) return Blocks.STONE.getDefaultState();
+        return null;
+    }
+
+    private static ChunkSection section(String palette) {
+        var container = new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+        var random = new Random(0x4D6E53644CL);
+
+        switch (palette) {
+            case "dense" -> {
+                var states = new ArrayList<BlockState>();
+                states.add(Blocks.STONE.getDefaultState());
+                states.add(Blocks.GRANITE.getDefaultState());
+                for (var block : Registries.BLOCK) {
+                    if (states.size() >= 64) break;
+                    var state = block.getDefaultState();
+                    if (!states.contains(state)) states.add(state);
+                }
+                for (int i = 0; i < 4096; i++) {
+                    container.set(i & 15, (i >> 8) & 15, (i >> 4) & 15, states.get(random.nextInt(states.size())));
+                }
+            }
+            case "sparse" -> {
+                for (int i = 0; i < 4096; i++) {
+                    if (random.nextInt(100) == 0) {
+                        container.set(i & 15, (i >> 8) & 15, (i >> 4) & 15, Blocks.STONE.getDefaultState());
+                    }
+                }
+            }
+            case "single" -> {
+                container = new PalettedContainer<>(Block.STATE_IDS, Blocks.STONE.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+            }
+            default -> throw new IllegalArgumentException("Unknown palette '" + palette + "'");
+        }
+
+        var section = new ChunkSection(container, null);
+        section.calculateCounts();
+        return section;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        section = section(palette);
+
+        var region = switch (coverage) {
+            case "full" -> new Region(new BlockPos(0, 0, 0), new BlockPos(15, 15, 15));
+            case "partial" -> new Region(new BlockPos(2, 2, 2), new BlockPos(13, 13, 13));
+            default -> throw new IllegalArgumentException("Unknown coverage '" + coverage + "'");
+        };
+
+        var queueReplace = EditorFixtures.queue();
+        queueReplace.replace((state) -> swap(state) != null, EditorBenchmark::swap);
+        taskReplace = EditorFixtures.task(region, queueReplace);
+
+        var queueEdit = EditorFixtures.queue();
+        queueEdit.edit((state, x, y, z) -> swap(state));
+        taskEdit = EditorFixtures.task(region, queueEdit);
+
+        var queueMiss = EditorFixtures.queue();
+        queueMiss.replace((state) -> state.isOf(Blocks.BEDROCK), (state) -> Blocks.AIR.getDefaultState());
+        taskMiss = EditorFixtures.task(region, queueMiss);
+    }
+
+    @Benchmark
+    public Object replace() {
+        return taskReplace.performSection(section, 0, 0, 0);
+    }
+
+    @Benchmark
+    public Object edit() {
+        return taskEdit.performSection(section, 0, 0, 0);
+    }
+
+    @Benchmark
+    public Object miss() {
+        return taskMiss.performSection(section, 0, 0, 0);
+    }
+
+}
@@ -0,0 +1,78 @@
+package dev.foxgirl.mineseekdestroy.util;
+
+import net.minecraft.server.world.ServerWorld;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Objects;
+
+/**
+ * Builds {@link Editor} queues and tasks that are not attached to any world, so that benchmarks can perform sections
+ * directly. Reaches into the editor reflectively, which keeps these fixtures out of the production API.
+ */
+final class EditorFixtures {
+
+    private EditorFixtures() {
+    }
+
+    private static final Constructor<?> QUEUE_CONSTRUCTOR;
+    private static final Method QUEUE_CONSUME;
+    private static final Field QUEUE_SOURCE;
+    private static final Constructor<?> TARGET_CONSTRUCTOR;
+    private static final Constructor<?> TASK_CONSTRUCTOR;
+
+    static {
+        try {
+            var targetClass = Class.forName(Editor.class.getName() + "$Target");
+            var operationClass = Class.forName(Editor.class.getName() + "$Operation");
+
+            QUEUE_CONSTRUCTOR = Editor.Queue.class.getDeclaredConstructor(ServerWorld.class, String.class);
+            QUEUE_CONSUME = Editor.Queue.class.getDeclaredMethod("consume");
+            QUEUE_SOURCE = Editor.Queue.class.getDeclaredField("source");
+            TARGET_CONSTRUCTOR = targetClass.getDeclaredConstructor(ServerWorld.class, Region.class);
+            TASK_CONSTRUCTOR = Editor.Task.class.getDeclaredConstructor(targetClass, Array.newInstance(operationClass, 0).getClass(), String.class);
+
+            QUEUE_CONSTRUCTOR.setAccessible(true);
+            QUEUE_CONSUME.setAccessible(true);
+            QUEUE_SOURCE.setAccessible(true);
+            TARGET_CONSTRUCTOR.setAccessible(true);
+            TASK_CONSTRUCTOR.setAccessible(true);
+        } catch (ReflectiveOperationException cause) {
+            throw new ExceptionInInitializerError(cause);
+        }
+    }
+
+    /**
+     * Creates a queue that is not attached to any world and is never performed by {@link Editor#update()}.
+     * @return Detached queue instance.
+     */
+    static @NotNull Editor.Queue queue() {
+        try {
+            return (Editor.Queue) QUEUE_CONSTRUCTOR.newInstance(null, "detached");
+        } catch (ReflectiveOperationException cause) {
+            throw new IllegalStateException("Failed to create detached queue", cause);
+        }
+    }
+
+    /**
+     * Consumes a detached queue into a task whose sections can be performed directly with {@link Editor.Task#performSection}.
+     * @param region Region to clip the task's operations to.
+     * @param queue Detached queue to consume.
+     * @return Detached task instance.
+     * @throws NullPointerException If either of the provided arguments are null.
+     */
+    static @NotNull Editor.Task task(@NotNull Region region, @NotNull Editor.Queue queue) {
+        Objects.requireNonNull(region, "Argument 'region'");
+        Objects.requireNonNull(queue, "Argument 'queue'");
+        try {
+            var target = TARGET_CONSTRUCTOR.newInstance(null, region);
+            return (Editor.Task) TASK_CONSTRUCTOR.newInstance(target, QUEUE_CONSUME.invoke(queue), QUEUE_SOURCE.get(queue));
+        } catch (ReflectiveOperationException cause) {
+            throw new IllegalStateException("Failed to create detached task", cause);
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package dev.foxgirl.mineseekdestroy.util;
+
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Region#contains(int, int, int)} and {@link Region.Set#contains(int, int, int)} over a fixed set of probe positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegionBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"1", "8", "64"})
+    public int regions;
+
+    private Region region;
+    private Region.Set set;
+    private int[] probes;
+
+    @Setup
+    public void setup() {
+        var random = new Random(0x526567696FL);
+
+        var list = new ArrayList<Region>(regions);
+        for (int i = 0; i < regions; i++) {
+            int x = random.nextInt(512) - 256;
+            int y = random.nextInt(128) - 64;
+            int z = random.nextInt(512) - 256;
+            list.add(new Region(new BlockPos(x, y, z), new BlockPos(x + random.nextInt(64), y + random.nextInt(32), z + random.nextInt(64))));
+        }
+        region = list.get(0);
+        set = new Region.Set(list);
+
+        probes = new int[PROBES * 3];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i * 3] = random.nextInt(640) - 320;
+            probes[i * 3 + 1] = random.nextInt(192) - 96;
+            probes[i * 3 + 2] = random.nextInt(640) - 320;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void regionContains(Blackhole blackhole) {
+        var probes = this.probes;
+        for (int i = 0; i < probes.length; i += 3) {
+            blackhole.consume(region.contains(probes[i], probes[i + 1], probes[i + 2]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void setContains(Blackhole blackhole) {
+        var probes = this.probes;
+        for (int i = 0; i < probes.length; i += 3) {
+            blackhole.consume(set.contains(probes[i], probes[i + 1], probes[i + 2]));
+        }
+    }
+
+}
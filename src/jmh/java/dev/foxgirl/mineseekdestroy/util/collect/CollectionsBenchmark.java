@@ -0,0 +1,129 @@
+package dev.foxgirl.mineseekdestroy.util.collect;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks lookups in {@link ImmutableMap}, {@link ImmutableSet} and {@link ImmutableList} against JDK and fastutil equivalents.
+ * Half of the probed keys are present in each collection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollectionsBenchmark {
+
+    private static final int PROBES = 256;
+
+    @Param({"4", "64", "1024"})
+    public int size;
+
+    private Object[] probes;
+
+    private Map<Object, Object> mapImmutable;
+    private Map<Object, Object> mapHash;
+    private Map<Object, Object> mapJdk;
+    private Map<Object, Object> mapFastutil;
+
+    private Set<Object> setImmutable;
+    private Set<Object> setHash;
+    private Set<Object> setJdk;
+    private Set<Object> setFastutil;
+
+    private List<Object> listImmutable;
+    private List<Object> listArray;
+    private List<Object> listJdk;
+    private List<Object> listFastutil;
+
+    @Setup
+    public void setup() {
+        var random = new Random(0x436F6C6CL);
+
+        var keys = new ArrayList<Object>(size);
+        var map = new LinkedHashMap<Object, Object>(size);
+        for (int i = 0; i < size; i++) {
+            var key = "key-" + i;
+            keys.add(key);
+            map.put(key, i);
+        }
+
+        probes = new Object[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            // Fresh instances, so lookups cannot short-circuit on identity
+            probes[i] = new String(random.nextBoolean() ? "key-" + random.nextInt(size) : "miss-" + i);
+        }
+
+        mapImmutable = ImmutableMap.of(map);
+        mapHash = new HashMap<>(map);
+        mapJdk = Map.copyOf(map);
+        mapFastutil = new Object2ObjectOpenHashMap<>(map);
+
+        setImmutable = ImmutableSet.of(keys);
+        setHash = new HashSet<>(keys);
+        setJdk = Set.copyOf(keys);
+        setFastutil = new ObjectOpenHashSet<>(keys);
+
+        listImmutable = ImmutableList.of(keys);
+        listArray = new ArrayList<>(keys);
+        listJdk = List.copyOf(keys);
+        listFastutil = new ObjectArrayList<>(keys);
+    }
+
+    private void mapGet(Map<Object, Object> map, Blackhole blackhole) {
+        for (var probe : probes) blackhole.consume(map.get(probe));
+    }
+
+    private void setContains(Set<Object> set, Blackhole blackhole) {
+        for (var probe : probes) blackhole.consume(set.contains(probe));
+    }
+
+    private void listContains(List<Object> list, Blackhole blackhole) {
+        for (var probe : probes) blackhole.consume(list.contains(probe));
+    }
+
+    private void listGet(List<Object> list, Blackhole blackhole) {
+        for (int i = 0, size = list.size(); i < PROBES; i++) blackhole.consume(list.get(i % size));
+    }
+
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void mapGetImmutable(Blackhole blackhole) { mapGet(mapImmutable, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void mapGetHash(Blackhole blackhole) { mapGet(mapHash, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void mapGetJdk(Blackhole blackhole) { mapGet(mapJdk, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void mapGetFastutil(Blackhole blackhole) { mapGet(mapFastutil, blackhole); }
+
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void setContainsImmutable(Blackhole blackhole) { setContains(setImmutable, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void setContainsHash(Blackhole blackhole) { setContains(setHash, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void setContainsJdk(Blackhole blackhole) { setContains(setJdk, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void setContainsFastutil(Blackhole blackhole) { setContains(setFastutil, blackhole); }
+
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listContainsImmutable(Blackhole blackhole) { listContains(listImmutable, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listContainsArray(Blackhole blackhole) { listContains(listArray, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listContainsJdk(Blackhole blackhole) { listContains(listJdk, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listContainsFastutil(Blackhole blackhole) { listContains(listFastutil, blackhole); }
+
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listGetImmutable(Blackhole blackhole) { listGet(listImmutable, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listGetArray(Blackhole blackhole) { listGet(listArray, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listGetJdk(Blackhole blackhole) { listGet(listJdk, blackhole); }
+    @Benchmark @OperationsPerInvocation(PROBES)
+    public void listGetFastutil(Blackhole blackhole) { listGet(listFastutil, blackhole); }
+
+}
@@ -2,10 +2,14 @@ package dev.foxgirl.mineseekdestroy;
 
 import dev.foxgirl.mineseekdestroy.command.Command;
 import dev.foxgirl.mineseekdestroy.state.GameState;
+import dev.foxgirl.mineseekdestroy.state.PlayingGameState;
+import dev.foxgirl.mineseekdestroy.state.SkirmishingGameState;
 import dev.foxgirl.mineseekdestroy.state.WaitingGameState;
+import dev.foxgirl.mineseekdestroy.util.Broadcast;
 import dev.foxgirl.mineseekdestroy.util.Console;
 import dev.foxgirl.mineseekdestroy.util.Editor;
 import dev.foxgirl.mineseekdestroy.util.ExtraEvents;
+import dev.foxgirl.mineseekdestroy.util.PacketFilters;
 import dev.foxgirl.mineseekdestroy.util.async.Scheduler;
 import dev.foxgirl.mineseekdestroy.util.collect.ImmutableSet;
 import net.fabricmc.api.DedicatedServerModInitializer;
@@ -225,6 +229,14 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
     public static final @NotNull GameRules.Key<GameRules.IntRule> RULE_COUNTDOWN_TEXT_FADEOUT_DURATION =
         GameRuleRegistry.register("msdCountdownTextFadeoutDuration", GameRules.Category.MISC, GameRuleFactory.createIntRule(10));
 
+    public static final @NotNull GameRules.Key<DoubleRule> RULE_EDITOR_BUDGET_DURATION =
+        GameRuleRegistry.register("msdEditorBudgetMillis", GameRules.Category.MISC, GameRuleFactory.createDoubleRule(10.0, 0.0));
+    public static final @NotNull GameRules.Key<DoubleRule> RULE_SCHEDULER_BUDGET_DURATION =
+        GameRuleRegistry.register("msdSchedulerBudgetMillis", GameRules.Category.MISC, GameRuleFactory.createDoubleRule(15.0, 0.0));
+
+    public static final @NotNull GameRules.Key<GameRules.BooleanRule> RULE_PACKET_FILTERS_OFF_THREAD =
+        GameRuleRegistry.register("msdPacketFiltersOffThread", GameRules.Category.MISC, GameRuleFactory.createBooleanRule(false));
+
     public static final @NotNull Set<@NotNull UUID> OPERATORS = ImmutableSet.copyOf(new UUID[] {
         UUID.fromString("84cc25f6-1689-4729-a3fa-43a79e428404"), // luavixen
         UUID.fromString("ea5f3df6-eba5-47b6-a7f8-fbfec4078069"), // bread_enu
@@ -460,6 +472,11 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
     public void setState(@NotNull GameState state) {
         Objects.requireNonNull(state, "Argument 'state'");
         if (this.state != state) {
+            // Leaving a round or skirmish ends it, including when an operator changes the state by hand
+            var context = getContext();
+            if (context != null && (this.state instanceof PlayingGameState || this.state instanceof SkirmishingGameState)) {
+                context.endRound();
+            }
             this.state = state;
             LOGGER.info("Game state changed to " + state.getName());
         }
@@ -582,10 +599,15 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
         ServerLifecycleEvents.SERVER_STARTING.register(this);
         ServerLifecycleEvents.SERVER_STARTED.register(this);
         ServerTickEvents.START_SERVER_TICK.register(this);
+        ServerTickEvents.END_SERVER_TICK.register((server) -> Broadcast.flush());
 
         CommandRegistrationCallback.EVENT.register(Command.INSTANCE);
 
-        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayerEntity, newPlayerEntity, alive) -> getState().onRespawn(getContext(), oldPlayerEntity, newPlayerEntity, alive));
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayerEntity, newPlayerEntity, alive) -> {
+            var context = getContext();
+            getState().onRespawn(context, oldPlayerEntity, newPlayerEntity, alive);
+            if (context != null) context.glowService.resync();
+        });
         ServerPlayerEvents.ALLOW_DEATH.register((playerEntity, damageSource, damageAmount) -> getState().allowDeath(getContext(), playerEntity, damageSource, damageAmount));
         ExtraEvents.PLAYER_DAMAGED.register((playerEntity, damageSource, damageAmount) -> getState().onTakeDamage(getContext(), playerEntity, damageSource, damageAmount));
         PlayerBlockBreakEvents.BEFORE.register((world, playerEntity, blockPos, blockState, blockEntity) -> getState().allowBlockBreak(getContext(), playerEntity, world, blockPos, blockState, blockEntity));
@@ -670,6 +692,8 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
 
         Scheduler.update();
         Editor.update();
+
+        PacketFilters.update();
     }
 
     private void updateContext() {
@@ -690,6 +714,12 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
 
         var properties = getProperties();
 
+        var bounds = GameProperties.boundsOf(properties);
+        long boundsKillzone = bounds.mask(GameProperties.Bounds.ALL, GameProperties.Bounds.LEGAL, GameProperties.Bounds.PLAYABLE);
+        long boundsBlimp = bounds.mask(GameProperties.Bounds.BLIMP, GameProperties.Bounds.BLIMP_BALLOONS);
+
+        var boundsOfInstances = GameProperties.getBoundsOfInstances();
+
         for (var playerEntity : playerEntities) {
             if (hasOperator(playerEntity)) continue;
             if (playerEntity.interactionManager.getGameMode() != GameMode.SURVIVAL) {
@@ -700,18 +730,14 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
                 playerEntity.damage(playerEntity.getDamageSources().outsideBorder(), 5000.0F);
                 playerEntity.setHealth(0.0F);
             } else if (playerEntity.isAlive()) {
+                var pos = playerEntity.getBlockPos();
+                long boundsQuery = bounds.query(pos);
                 if (
                     (playerEntity.getWorld() != world) || (playerEntity.getY() < -256.0) || (
                         getRuleBoolean(Game.RULE_KILLZONE_BOUNDS_ENABLED) &&
-                        properties.getRegionAll().excludes(playerEntity) &&
-                        properties.getRegionLegal().excludes(playerEntity) &&
-                        properties.getRegionPlayable().excludes(playerEntity)
+                        (boundsQuery & boundsKillzone) == 0L
                     ) || (
-                        GameProperties.getInstances().stream().noneMatch(propertiesOther ->
-                            propertiesOther.getRegionAll().contains(playerEntity) ||
-                            propertiesOther.getRegionLegal().contains(playerEntity) ||
-                            propertiesOther.getRegionPlayable().contains(playerEntity)
-                        )
+                        boundsOfInstances.excludes(pos)
                     )
                 ) {
                     LOGGER.info("OOB Player \"{}\" entered out of bounds killzone or is out of the world", playerEntity.getNameForScoreboard());
@@ -722,10 +748,8 @@ public final class Game implements Console, DedicatedServerModInitializer, Serve
                     var player = context.getPlayer(playerEntity);
                     if (
                         player.isPlaying() && player.isAlive() && !player.isUndead() &&
-                        getRuleBoolean(Game.RULE_KILLZONE_BLIMP_ENABLED) && (
-                            properties.getRegionBlimp().contains(playerEntity) ||
-                            properties.getRegionBlimpBalloons().contains(playerEntity)
-                        )
+                        getRuleBoolean(Game.RULE_KILLZONE_BLIMP_ENABLED) &&
+                        (boundsQuery & boundsBlimp) != 0L
                     ) {
                         playerEntity.addStatusEffect(new StatusEffectInstance(StatusEffects.WITHER, 40));
                     }
@@ -3,6 +3,8 @@ package dev.foxgirl.mineseekdestroy;
 import com.mojang.serialization.Lifecycle;
 import dev.foxgirl.mineseekdestroy.service.*;
 import dev.foxgirl.mineseekdestroy.state.WaitingGameState;
+import dev.foxgirl.mineseekdestroy.util.async.Async;
+import dev.foxgirl.mineseekdestroy.util.async.Scope;
 import dev.foxgirl.mineseekdestroy.util.collect.ImmutableList;
 import dev.foxgirl.mineseekdestroy.util.collect.ImmutableMap;
 import kotlin.Pair;
@@ -38,6 +40,13 @@ public final class GameContext {
 
     public final @NotNull Game game;
 
+    /**
+     * Scope of async tasks for this game, cancelled when the game is destroyed.
+     */
+    public final @NotNull Scope scope = Async.scope("game");
+
+    private @NotNull Scope roundScope = scope.scope("round");
+
     public final @NotNull MinecraftServer server;
     public final @NotNull ServerWorld world;
 
@@ -290,7 +299,48 @@ public final class GameContext {
         }
     }
 
+    /**
+     * Returns the scope of async tasks for the current round, which is
+     * cancelled when the round ends, when the next round begins, or when the
+     * game is destroyed.
+     */
+    public @NotNull Scope getRoundScope() {
+        return roundScope;
+    }
+
+    /**
+     * Cancels all async tasks of the previous round and begins a new round
+     * scope. Must be called whenever a round or skirmish starts.
+     */
+    public void beginRound() {
+        int count = roundScope.cancel();
+        if (count > 0) Game.LOGGER.info("Cancelled " + count + " async task(s) left over from the previous round");
+        roundScope = scope.scope("round");
+    }
+
+    /**
+     * Cancels all async tasks of the current round and replaces the round
+     * scope. Called whenever the game leaves a round or skirmish.
+     */
+    public void endRound() {
+        int count = roundScope.cancel();
+        if (count > 0) Game.LOGGER.info("Cancelled " + count + " async task(s) at the end of the round");
+        roundScope = scope.scope("round");
+        pagesService.handleRoundEnd();
+    }
+
     public void destroy() {
+        int count = scope.cancel();
+        if (count > 0) Game.LOGGER.info("Cancelled " + count + " async task(s) while destroying game");
+
+        for (var service : services) {
+            try {
+                service.destroy();
+            } catch (Throwable cause) {
+                Game.LOGGER.error("Service " + service.getClass().getSimpleName() + " failed to destroy", cause);
+            }
+        }
+
         scoreboard.removeObjective(scoreboardDamage);
         // scoreboard.removeObjective(scoreboardSouls);
         scoreboard.removeObjective(scoreboardHearts);
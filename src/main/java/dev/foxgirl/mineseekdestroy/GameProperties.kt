@@ -54,9 +54,39 @@ sealed interface GameProperties {
 
     fun setup(context: GameContext) {}
 
+    enum class Bounds { ALL, LEGAL, PLAYABLE, BLIMP, BLIMP_BALLOONS }
+
     companion object {
         @JvmStatic val instances = immutableListOf(Base, Macander, Radiator, Realm, Lights, Station, Horror, Island)
         @JvmStatic val instancesByName = buildImmutableMap<String, GameProperties> { instances.forEach { put(it.name, it) } }
+
+        private val boundsByInstance = buildImmutableMap<GameProperties, Region.Index<Bounds>> {
+            instances.forEach {
+                put(it, Region.Index.builder<Bounds>()
+                    .add(Bounds.ALL, it.regionAll)
+                    .add(Bounds.LEGAL, it.regionLegal)
+                    .add(Bounds.PLAYABLE, it.regionPlayable)
+                    .add(Bounds.BLIMP, it.regionBlimp)
+                    .add(Bounds.BLIMP_BALLOONS, it.regionBlimpBalloons)
+                    .build())
+            }
+        }
+
+        /**
+         * Index of the all, legal and playable regions of every map, keyed by map.
+         */
+        @JvmStatic val boundsOfInstances = Region.Index.builder<GameProperties>().apply {
+            instances.forEach {
+                add(it, it.regionAll)
+                add(it, it.regionLegal)
+                add(it, it.regionPlayable)
+            }
+        }.build()
+
+        /**
+         * Returns the index of the given map's bounding regions, built once per map.
+         */
+        @JvmStatic fun boundsOf(properties: GameProperties): Region.Index<Bounds> = boundsByInstance[properties]!!
     }
 
     object Base : GameProperties {
@@ -10,6 +10,7 @@ import dev.foxgirl.mineseekdestroy.service.SummonsService
 import dev.foxgirl.mineseekdestroy.state.*
 import dev.foxgirl.mineseekdestroy.util.*
 import dev.foxgirl.mineseekdestroy.util.async.Async
+import dev.foxgirl.mineseekdestroy.util.async.AsyncProfiler
 import dev.foxgirl.mineseekdestroy.util.async.await
 import net.minecraft.block.Blocks
 import net.minecraft.command.EntitySelector
@@ -305,6 +306,80 @@ internal fun setup() {
                 }
             }
         }
+        it.params(argLiteral("editor")) {
+            it.params(argLiteral("enable")) {
+                it.action { args ->
+                    EditorMetrics.enable()
+                    args.sendInfo("Enabled editor metrics")
+                }
+            }
+            it.params(argLiteral("disable")) {
+                it.action { args ->
+                    EditorMetrics.disable()
+                    args.sendInfo("Disabled editor metrics")
+                }
+            }
+            it.params(argLiteral("dump")) {
+                it.action { args ->
+                    try {
+                        val path = EditorMetrics.dump()
+                        args.sendInfo("Saved editor metrics to file", path.fileName.toString())
+                    } catch (cause: Exception) {
+                        Game.LOGGER.error("Failed to save editor metrics", cause)
+                        args.sendError("Failed to save editor metrics")
+                    }
+                }
+            }
+            it.params(argLiteral("reset")) {
+                it.action { args ->
+                    EditorMetrics.reset()
+                    args.sendInfo("Reset editor metrics")
+                }
+            }
+            it.action { args ->
+                EditorMetrics.describe().forEach { args.sendInfo(it) }
+            }
+        }
+        it.params(argLiteral("glow")) {
+            it.actionWithContext { args, context ->
+                context.glowService.broadcastFull()
+                args.sendInfo("Resent glow flags to all players")
+            }
+        }
+        it.params(argLiteral("packets")) {
+            it.params(argLiteral("reset")) {
+                it.action { args ->
+                    PacketFilters.reset()
+                    args.sendInfo("Reset packet filter counters")
+                }
+            }
+            it.action { args ->
+                PacketFilters.describe().forEach { args.sendInfo(it) }
+            }
+        }
+        it.params(argLiteral("async")) {
+            it.params(argLiteral("enable")) {
+                it.action { args ->
+                    AsyncProfiler.enable()
+                    args.sendInfo("Enabled async profiler")
+                }
+            }
+            it.params(argLiteral("disable")) {
+                it.action { args ->
+                    AsyncProfiler.disable()
+                    args.sendInfo("Disabled async profiler")
+                }
+            }
+            it.params(argLiteral("reset")) {
+                it.action { args ->
+                    AsyncProfiler.reset()
+                    args.sendInfo("Reset async profiler")
+                }
+            }
+            it.action { args ->
+                AsyncProfiler.describe().forEach { args.sendInfo(it) }
+            }
+        }
         it.params(argLiteral("cleanloot")) {
             it.actionWithContext { args, context ->
                 context.lootService.executeDebugClean(args)
@@ -5,7 +5,6 @@ import dev.foxgirl.mineseekdestroy.GameContext
 import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameTeam
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.Scheduler
 import net.minecraft.entity.player.PlayerEntity
 import net.minecraft.entity.player.PlayerInventory
@@ -138,7 +137,7 @@ class AutomationService : Service() {
         val secondsDelay = Rules.automationDelayDuration
         val secondsInterval = Rules.automationIntervalDuration
 
-        Async.go {
+        scope.go {
             delay(secondsDelay)
 
             players.forEach { it.isAlive = true }
@@ -199,7 +198,7 @@ class AutomationService : Service() {
             return
         }
         try {
-            Scheduler.delay(5.0) { ipadCooldownFlag.set(false) }
+            scope.delay(5.0, Scheduler.Priority.CRITICAL) { ipadCooldownFlag.set(false) }
         } catch (cause: Exception) {
             ipadCooldownFlag.set(false)
             throw cause
@@ -241,7 +240,7 @@ class AutomationService : Service() {
         val factoryPlayers = IpadNamedScreenHandlerFactory(inventoryPlayers)
         val factoryView = IpadNamedScreenHandlerFactory(inventoryView)
 
-        val schedule = Scheduler.interval(1.0) {
+        val schedule = scope.interval(1.0) {
             for (player in context.players) {
                 val entity = player.entity ?: continue
 
@@ -260,7 +259,7 @@ class AutomationService : Service() {
             }
         }
 
-        Async.go {
+        scope.go {
             while (true) {
                 delay(1.0)
                 if (!buttonState.ready()) continue
@@ -1,5 +1,6 @@
 package dev.foxgirl.mineseekdestroy.service
 
+import dev.foxgirl.mineseekdestroy.util.BlockIndex
 import dev.foxgirl.mineseekdestroy.util.Console
 import dev.foxgirl.mineseekdestroy.util.Editor
 import dev.foxgirl.mineseekdestroy.util.Region
@@ -30,8 +31,8 @@ class BarrierService : Service() {
     private var targetsBlimp = listOf<Target>()
 
     private fun search(name: String, template: Region, target: Region): CompletableFuture<List<Target>> =
-        Async.execute {
-            val results = Editor.queue(world, template).search { !it.isAir && it.block !== Blocks.MAGENTA_WOOL }.await()
+        scope.execute {
+            val results = BlockIndex.of(properties).search(world, "barrier-${name}", template) { !it.isAir && it.block !== Blocks.MAGENTA_WOOL }.await()
             logger.info("BarrierService search in barrier template \"${name}\" returned ${results.size} result(s)")
 
             val offset = target.start.subtract(template.start)
@@ -59,7 +60,7 @@ class BarrierService : Service() {
     }
 
     override fun setup() {
-        Async.go {
+        scope.go {
             awaitAll(
                 execute(::setupArena),
                 execute(::setupBlimp),
@@ -77,17 +78,19 @@ class BarrierService : Service() {
     }
 
     fun executeBlimpOpen(console: Console) {
-        Async.go {
-            val action = Editor.Action { state, _, _, _ -> if (state.block === Blocks.RED_STAINED_GLASS) blockAir else null }
-            awaitAll(properties.regionBarrierBlimpFills.map { region -> Editor.queue(world, region).edit(action) })
+        scope.go {
+            val filter = Editor.Predicate { it.block === Blocks.RED_STAINED_GLASS }
+            val transform = Editor.Transform { blockAir }
+            awaitAll(properties.regionBarrierBlimpFills.map { region -> Editor.queue(world, region).replace(filter, transform) })
             apply(targetsBlimp) { infoAir }
             console.sendInfo("Blimp barriers opened")
         }
     }
     fun executeBlimpClose(console: Console) {
-        Async.go {
-            val action = Editor.Action { state, _, _, _ -> if (state.isAir) blockBarrier else null }
-            awaitAll(properties.regionBarrierBlimpFills.map { region -> Editor.queue(world, region).edit(action) })
+        scope.go {
+            val filter = Editor.Predicate { it.isAir }
+            val transform = Editor.Transform { blockBarrier }
+            awaitAll(properties.regionBarrierBlimpFills.map { region -> Editor.queue(world, region).replace(filter, transform) })
             apply(targetsBlimp, Target::infoClosed)
             console.sendInfo("Blimp barriers closed")
         }
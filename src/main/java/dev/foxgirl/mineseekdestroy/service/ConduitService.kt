@@ -4,7 +4,6 @@ import dev.foxgirl.mineseekdestroy.GameItems
 import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameTeam
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.Scheduler
 import dev.foxgirl.mineseekdestroy.util.async.await
 import dev.foxgirl.mineseekdestroy.util.collect.enumMapOf
@@ -89,7 +88,7 @@ class ConduitService : Service() {
         abstract fun deactivate()
 
         protected fun startOwnHunger(hungerPerSecond: Double) {
-            Async.go {
+            roundScope.go {
                 delay(0.5)
                 while (isActive) {
                     val playerEntity = playerEntity ?: continue
@@ -103,7 +102,7 @@ class ConduitService : Service() {
             }
         }
         protected fun startOtherHunger(hungerPerSecond: Double) {
-            Async.go {
+            roundScope.go {
                 delay(0.5)
                 val targets = mutableMapOf<GamePlayer, Int>()
                 while (isActive) {
@@ -198,13 +197,13 @@ class ConduitService : Service() {
 
             removeHunger(playerEntity)
 
-            Scheduler.delay(5.0) {
+            roundScope.delay(5.0, Scheduler.Priority.CRITICAL) {
                 if (isActive) {
                     isCancelled = true
                 }
             }
 
-            Async.go {
+            roundScope.go {
                 val structure = structures[playerEntity.horizontalFacing]!!
 
                 val offset = playerEntity.blockPos.subtract(structure.center)
@@ -252,7 +251,7 @@ class ConduitService : Service() {
 
                 for (soundEntry in scoreSoundEntries) {
                     if (soundEntry.delay > 0.0) {
-                        delay(soundEntry.delay)
+                        delay(soundEntry.delay, Scheduler.Priority.COSMETIC)
                     }
                     Broadcast.sendSound(soundEntry.sound, SoundCategory.RECORDS, soundEntry.volume, soundEntry.pitch, soundPositionSupplier)
                 }
@@ -274,7 +273,7 @@ class ConduitService : Service() {
             startOwnHunger(3.0)
             startOtherHunger(3.0)
 
-            Async.go {
+            roundScope.go {
                 delay(0.5)
 
                 val blocks = mutableMapOf<BlockPos, Pair<Long, Int>>()
@@ -356,7 +355,7 @@ class ConduitService : Service() {
 
             playerEntity.hungerManager.foodLevel = Math.max(playerEntity.hungerManager.foodLevel - 10, 0)
 
-            Scheduler.delay(3.0) {
+            roundScope.delay(3.0, Scheduler.Priority.CRITICAL) {
                 if (isActive) {
                     isCancelled = true
                 }
@@ -372,7 +371,7 @@ class ConduitService : Service() {
                 items.add(i to list[toolIndex].copy())
             }
 
-            Async.go {
+            roundScope.go {
                 for ((i, stack) in items) {
                     delay(0.5)
                     player.inventory?.set(i, stack)
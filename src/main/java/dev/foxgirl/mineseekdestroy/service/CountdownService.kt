@@ -80,14 +80,14 @@ class CountdownService : Service() {
                 damage += 0.1 * (iteration - 7).toDouble()
             }
 
-            Broadcast.send(TitleFadeS2CPacket(
+            Broadcast.queue(TitleFadeS2CPacket(
                 Rules.countdownTextFadeinDuration,
                 Rules.countdownTextStayDuration,
                 Rules.countdownTextFadeoutDuration,
             ))
-            Broadcast.send(TitleS2CPacket(text(DecimalFormat("#.#").format(-damage) + " ❤").red()))
-            Broadcast.send(SubtitleS2CPacket(text()))
-            Broadcast.sendSound(SoundEvents.ENTITY_ELDER_GUARDIAN_CURSE, SoundCategory.HOSTILE, 0.5F, 1.0F)
+            Broadcast.queue(TitleS2CPacket(text(DecimalFormat("#.#").format(-damage) + " ❤").red()))
+            Broadcast.queue(SubtitleS2CPacket(text()))
+            Broadcast.queueSound(SoundEvents.ENTITY_ELDER_GUARDIAN_CURSE, SoundCategory.HOSTILE, 0.5F, 1.0F)
             // Broadcast.sendParticles(ParticleTypes.ELDER_GUARDIAN, 0.0F, 0) { player, playerEntity ->
             //     if (player.isPlayingOrGhost && player.isAlive) playerEntity.pos else null
             // }
@@ -102,7 +102,7 @@ class CountdownService : Service() {
         }
 
         if (ticks % 5 == 0) {
-            Broadcast.send(OverlayMessageS2CPacket(text("${seconds}s until snip").red()))
+            Broadcast.queue(OverlayMessageS2CPacket(text("${seconds}s until snip").red()))
         }
 
         if (ticks <= 6 * 20 && ticks % 2 == 0) {
@@ -169,7 +169,7 @@ class CountdownService : Service() {
     }
 
     fun handleRoundStart() {
-        Scheduler.delay(5.0) {
+        roundScope.delay(5.0, Scheduler.Priority.CRITICAL) {
             if (Rules.countdownEnabled && Rules.countdownAutostartEnabled && !running) {
                 start(0)
                 Game.CONSOLE_OPERATORS.sendInfo("Countdown automatically started")
@@ -5,7 +5,6 @@ import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameTeam
 import dev.foxgirl.mineseekdestroy.state.DuelingGameState
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.terminate
 import net.minecraft.block.Blocks
 import net.minecraft.block.RespawnAnchorBlock
@@ -75,12 +74,12 @@ class DuelService : Service() {
     private fun setAnchorState(active: Boolean) {
         Editor.queue(world, properties.regionBlimp) { queue ->
             if (active) {
-                queue.edit { state, _, _, _ ->
-                    if (state.block === Blocks.RESPAWN_ANCHOR) state.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.MAX_CHARGES) else null
+                queue.replace({ it.block === Blocks.RESPAWN_ANCHOR }) {
+                    it.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.MAX_CHARGES)
                 }
             } else {
-                queue.edit { state, _, _, _ ->
-                    if (state.block === Blocks.RESPAWN_ANCHOR) state.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.NO_CHARGES) else null
+                queue.replace({ it.block === Blocks.RESPAWN_ANCHOR }) {
+                    it.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.NO_CHARGES)
                 }
             }
         }
@@ -124,7 +123,7 @@ class DuelService : Service() {
         victim.team = GameTeam.DUELIST
         victim.isAlive = true
 
-        Async.background().withTimeout(0.1).go {
+        scope.withTimeout(0.1).go {
             while (true) {
                 attacker.teleport(properties.positionDuel1)
                 victim.teleport(properties.positionDuel2)
@@ -133,7 +133,7 @@ class GhostService : Service() {
 
     override fun update() {
         if (schedule == null) {
-            schedule = Scheduler.delay(1.0) { schedule = null }
+            schedule = scope.delay(1.0, Scheduler.Priority.CRITICAL) { schedule = null }
             updateGhosts()
         }
         if (state.isPlaying) {
@@ -165,7 +165,7 @@ class GhostService : Service() {
     ) {
         if (attacker.team !== GameTeam.BLACK) return
 
-        Scheduler.now {
+        scope.now(Scheduler.Priority.CRITICAL) {
             attackerEntity.damage(
                 world.damageSources.create(Game.DAMAGE_TYPE_ABYSS, playerEntity, null),
                 999999.0F,
@@ -173,7 +173,7 @@ class GhostService : Service() {
         }
 
         if (healthValue(player).incrementAndCheck(Rules.ghostsBlackDeathPenaltyAmount)) {
-            Scheduler.now {
+            scope.now(Scheduler.Priority.CRITICAL) {
                 playerEntity.damage(
                     world.damageSources.create(Game.DAMAGE_TYPE_ABYSS),
                     999999.0F,
@@ -5,6 +5,8 @@ import dev.foxgirl.mineseekdestroy.mixin.MixinEntity;
 import dev.foxgirl.mineseekdestroy.mixin.MixinEntityTrackerUpdateS2CPacket;
 import dev.foxgirl.mineseekdestroy.util.Reflector;
 import dev.foxgirl.mineseekdestroy.util.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.data.DataTracker;
 import net.minecraft.entity.data.TrackedData;
@@ -13,10 +15,13 @@ import net.minecraft.server.network.ServerPlayerEntity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public final class GlowService extends Service {
 
@@ -48,9 +53,44 @@ public final class GlowService extends Service {
         return createFlagsPacket(entity, entity.getDataTracker().get(FLAGS));
     }
 
+    /**
+     * Maximum number of slots assigned to tracked subjects before all slots are reassigned.
+     */
+    private static final int SLOT_LIMIT = 256;
+
+    /**
+     * Last flags byte sent to a single viewer for each tracked subject, indexed by the slot of the subject.
+     * Accessed without locking, and only written when the value sent differs from the value stored.
+     */
+    private static final class Sent {
+        // Zero if nothing has been recorded, otherwise the flags byte with bit 8 set
+        private final AtomicIntegerArray values = new AtomicIntegerArray(SLOT_LIMIT);
+
+        private void record(int slot, byte value) {
+            int encoded = (value & 0xFF) | 0x100;
+            if (values.get(slot) != encoded) values.set(slot, encoded);
+        }
+
+        private boolean matches(int slot, byte value) {
+            return values.get(slot) == ((value & 0xFF) | 0x100);
+        }
+    }
+
+    // Copy-on-write map of viewers by entity ID, replaced on the server thread when the viewers change and read
+    // from handleTrackerUpdatePacket without locking
+    private volatile Int2ObjectOpenHashMap<Sent> sent = new Int2ObjectOpenHashMap<>();
+
+    private static final int BROADCASTS_PER_RESYNC = 15;
+
+    @Override
+    protected void setup() {
+        addPacketFilter(EntityTrackerUpdateS2CPacket.class, 0, this::handleTrackerUpdatePacket);
+    }
+
     private int broadcastTicks = 0;
+    private int broadcastCount = 0;
 
-    private void broadcast() {
+    private void broadcast(boolean full) {
         var world = getWorld();
         var context = getContext();
         var players = getPlayers();
@@ -72,6 +112,9 @@ public final class GlowService extends Service {
             }
         }
 
+        var tracked = this.tracked;
+        var pending = new ArrayList<EntityTrackerUpdateS2CPacket>(packetsFake.size());
+
         for (var player : players) {
             var entity = player.getEntity();
             if (entity == null) continue;
@@ -87,95 +130,248 @@ public final class GlowService extends Service {
             } else {
                 packets = packetsFake;
             }
-            for (var packet : packets) {
+
+            int viewerId = entity.getId();
+            var sent = this.sent.get(viewerId);
+
+            pending.clear();
+            if (full || sent == null) {
+                pending.addAll(packets);
+            } else {
+                for (var packet : packets) {
+                    var packetTracked = tracked.get(packet.id());
+                    // Compare against the value the packet filter will actually send, not the value before rewriting
+                    var value = rewriteFlags(tracked, viewerId, packet.id(), (byte) packet.trackedValues().get(0).value());
+                    if (packetTracked == null || !sent.matches(packetTracked.slot(), value)) pending.add(packet);
+                }
+            }
+            for (var packet : pending) {
                 networkHandler.sendPacket(packet);
             }
         }
     }
 
+    /**
+     * Broadcasts glow flags to all players, sending only the flags that differ from those last sent to each player.
+     */
     public void broadcastNow() {
         broadcastTicks = ThreadLocalRandom.current().nextInt(6);
-        broadcast();
+        broadcast(false);
+    }
+
+    /**
+     * Broadcasts glow flags to all players, resending every flag regardless of what was last sent.
+     */
+    public void broadcastFull() {
+        broadcastTicks = ThreadLocalRandom.current().nextInt(6);
+        broadcastCount = 0;
+        broadcast(true);
+    }
+
+    private boolean resyncPending = false;
+
+    /**
+     * Schedules a full broadcast on the next update, once respawned or newly joined players have been sent to others.
+     */
+    public void resync() {
+        resyncPending = true;
     }
 
     @Override
     public void update() {
+        updateTracked();
+
+        if (resyncPending) {
+            resyncPending = false;
+            broadcastFull();
+            return;
+        }
+
         if (broadcastTicks >= 40) {
-            broadcastNow();
+            if (++broadcastCount >= BROADCASTS_PER_RESYNC) {
+                broadcastFull();
+            } else {
+                broadcastNow();
+            }
         } else {
             broadcastTicks++;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public @Nullable EntityTrackerUpdateS2CPacket handleTrackerUpdatePacket(@NotNull EntityTrackerUpdateS2CPacket packet, @NotNull ServerPlayerEntity targetEntity) {
-        Objects.requireNonNull(packet, "Argument 'packet'");
-        Objects.requireNonNull(targetEntity, "Argument 'targetEntity'");
+    /**
+     * Glow-relevant state of a player, or of the disguise entity of a player, keyed by entity ID in {@link #tracked}.
+     * The slot indexes the flags last sent for this entity in {@link Sent}.
+     */
+    private record Tracked(int slot, @NotNull GameTeam team, boolean alive, boolean playing, boolean glowing, boolean cannonGlow) {
+    }
 
-        var valuesOld = packet.trackedValues();
-        if (valuesOld == null) return null;
+    // Rebuilt every tick on the server thread and read from handleTrackerUpdatePacket without locking
+    private volatile Int2ObjectOpenHashMap<Tracked> tracked = new Int2ObjectOpenHashMap<>();
 
-        var flags = (DataTracker.SerializedEntry<Byte>) null;
-        int flagsIndex = 0;
-        for (int i = 0, size = valuesOld.size(); i < size; i++) {
-            var value = valuesOld.get(i);
-            if (value.id() == FLAGS.getId()) {
-                flags = (DataTracker.SerializedEntry<Byte>) value;
-                flagsIndex = i;
-            }
-        }
-        if (flags == null) return null;
+    // Slots of tracked entities by entity ID, only accessed on the server thread, slots are never reused until reset
+    private final Int2IntOpenHashMap slots = new Int2IntOpenHashMap();
+    private int slotsNext = 0;
 
+    private void updateTracked() {
         var context = getContext();
+        var players = getPlayers();
 
-        var targetPlayer = context.getPlayer(targetEntity);
+        var entities = new ArrayList<Entity>(players.size() + 10);
+        for (var player : players) {
+            var entity = player.getEntity();
+            if (entity == null) continue;
+            entities.add(entity);
+            var disguiseEntity = context.disguiseService.getDisguise(player);
+            if (disguiseEntity != null) entities.add(disguiseEntity);
+        }
 
-        var packetId = packet.id();
-        if (packetId == targetEntity.getId()) return null;
+        int slotsNeeded = 0;
+        for (var entity : entities) {
+            if (!slots.containsKey(entity.getId())) slotsNeeded++;
+        }
+        // Once slots run out every slot is reassigned, and every viewer starts over with nothing recorded
+        boolean slotsReset = slotsNext + slotsNeeded > SLOT_LIMIT;
+        if (slotsReset) {
+            slots.clear();
+            slotsNext = 0;
+        }
+
+        var tracked = new Int2ObjectOpenHashMap<Tracked>(entities.size());
+        for (var player : players) {
+            var entity = player.getEntity();
+            if (entity == null) continue;
+            var team = player.getTeam();
+            boolean playing = player.isPlaying() && player.isAlive();
+            boolean glowing = player.isPlayingOrGhost() && player.isAlive();
+            boolean cannonGlow = context.conduitService.shouldMakeCannonPlayersGlow(player);
+            tracked.put(entity.getId(), new Tracked(slot(entity), team, entity.isAlive(), playing, glowing, cannonGlow));
+            var disguiseEntity = context.disguiseService.getDisguise(player);
+            if (disguiseEntity != null) {
+                tracked.put(disguiseEntity.getId(), new Tracked(slot(disguiseEntity), team, disguiseEntity.isAlive(), playing, glowing, cannonGlow));
+            }
+        }
+        slots.keySet().removeIf((int id) -> !tracked.containsKey(id));
 
-        var packetEntity = targetEntity.getWorld().getEntityById(packetId);
-        if (packetEntity == null || !packetEntity.isAlive()) return null;
+        this.tracked = tracked;
 
-        var packetPlayer = context.getPlayer(packetEntity);
-        if (packetPlayer == null) {
-            packetPlayer = context.disguiseService.getDisguisedPlayer(packetEntity);
-            if (packetPlayer == null) return null;
+        var sentOld = this.sent;
+        var sentNew = new Int2ObjectOpenHashMap<Sent>(players.size());
+        for (var player : players) {
+            var entity = player.getEntity();
+            if (entity == null) continue;
+            var sent = slotsReset ? null : sentOld.get(entity.getId());
+            sentNew.put(entity.getId(), sent != null ? sent : new Sent());
+        }
+        // Only replaced when a viewer joins or leaves or slots are reset, the map is read for every flags packet
+        if (slotsReset || !sentNew.keySet().equals(sentOld.keySet())) {
+            this.sent = sentNew;
+            resync();
         }
+    }
 
-        if (
-            context.conduitService.shouldMakeCannonPlayersGlow(packetPlayer) &&
-            targetPlayer.getTeam().isCanon() && targetPlayer.isPlaying() && targetPlayer.isAlive()
-        ) {
+    private int slot(Entity entity) {
+        int id = entity.getId();
+        if (slots.containsKey(id)) return slots.get(id);
+        int slot = slotsNext++;
+        slots.put(id, slot);
+        return slot;
+    }
 
-            // Black conduit exception, make cannon players glow!
+    private static boolean shouldRewrite(Tracked target, Tracked packet) {
+        // Black conduit exception, make cannon players glow!
+        if (packet.cannonGlow() && target.team().isCanon() && target.playing()) return true;
+        if (target.playing() && target.team() != packet.team()) return false;
+        if (target.team() == GameTeam.DUELIST && packet.team() == GameTeam.DUELIST) return false;
+        return true;
+    }
 
+    /**
+     * Computes the flags byte a viewer should see for a subject, rewriting the glowing bit if needed.
+     * @param tracked Tracked state to compute with.
+     * @param targetId Entity ID of the viewer.
+     * @param packetId Entity ID of the subject.
+     * @param value Real flags byte of the subject.
+     * @return Flags byte to send.
+     */
+    private static byte rewriteFlags(Int2ObjectOpenHashMap<Tracked> tracked, int targetId, int packetId, byte value) {
+        if (packetId == targetId) return value;
+        var targetTracked = tracked.get(targetId);
+        var packetTracked = tracked.get(packetId);
+        if (
+            targetTracked == null || packetTracked == null || !packetTracked.alive() ||
+            !shouldRewrite(targetTracked, packetTracked)
+        ) {
+            return value;
+        }
+        if (packetTracked.glowing()) {
+            return (byte) (value | 0x40);
         } else {
+            return (byte) (value & 0xBF);
+        }
+    }
 
-            if (
-                targetPlayer.isPlaying() && targetPlayer.isAlive() &&
-                targetPlayer.getTeam() != packetPlayer.getTeam()
-            ) return null;
+    /**
+     * View of a list of tracked values with the entry at one index replaced, avoiding a copy of the list.
+     */
+    private static final class ReplacedList extends AbstractList<DataTracker.SerializedEntry<?>> implements RandomAccess {
+        private final List<DataTracker.SerializedEntry<?>> base;
+        private final int index;
+        private final DataTracker.SerializedEntry<?> entry;
+
+        private ReplacedList(List<DataTracker.SerializedEntry<?>> base, int index, DataTracker.SerializedEntry<?> entry) {
+            this.base = base;
+            this.index = index;
+            this.entry = entry;
+        }
 
-            if (
-                targetPlayer.getTeam() == GameTeam.DUELIST &&
-                packetPlayer.getTeam() == GameTeam.DUELIST
-            ) return null;
+        @Override
+        public DataTracker.SerializedEntry<?> get(int index) {
+            return index == this.index ? entry : base.get(index);
+        }
 
+        @Override
+        public int size() {
+            return base.size();
         }
+    }
 
-        var value = (byte) flags.value();
-        if (packetPlayer.isPlayingOrGhost() && packetPlayer.isAlive()) {
-            value = (byte) (value | 0x40);
-        } else {
-            value = (byte) (value & 0xBF);
+    @SuppressWarnings("unchecked")
+    public @Nullable EntityTrackerUpdateS2CPacket handleTrackerUpdatePacket(@NotNull EntityTrackerUpdateS2CPacket packet, @NotNull ServerPlayerEntity targetEntity) {
+        Objects.requireNonNull(packet, "Argument 'packet'");
+        Objects.requireNonNull(targetEntity, "Argument 'targetEntity'");
+
+        var tracked = this.tracked;
+
+        var packetId = packet.id();
+        var targetId = targetEntity.getId();
+
+        // Flags of untracked entities are never rewritten nor compared, so their packets pass through untouched
+        var packetTracked = tracked.get(packetId);
+        if (packetTracked == null) return null;
+
+        var values = packet.trackedValues();
+        if (values == null) return null;
+
+        var flags = (DataTracker.SerializedEntry<Byte>) null;
+        int flagsIndex = 0;
+        for (int i = 0, size = values.size(); i < size; i++) {
+            var value = values.get(i);
+            if (value.id() == FLAGS.getId()) {
+                flags = (DataTracker.SerializedEntry<Byte>) value;
+                flagsIndex = i;
+            }
         }
+        if (flags == null) return null;
+
+        var valueOld = (byte) flags.value();
+        var valueNew = rewriteFlags(tracked, targetId, packetId, valueOld);
 
-        var valuesNew = new ArrayList<>(valuesOld);
+        var sent = this.sent.get(targetId);
+        if (sent != null) sent.record(packetTracked.slot(), valueNew);
 
-        valuesNew.remove(flagsIndex);
-        valuesNew.add(DataTracker.SerializedEntry.of(FLAGS, value));
+        if (valueNew == valueOld) return null;
 
-        return createPacket(packetId, valuesNew);
+        return createPacket(packetId, new ReplacedList(values, flagsIndex, DataTracker.SerializedEntry.of(FLAGS, valueNew)));
     }
 
 }
@@ -1,17 +1,20 @@
 package dev.foxgirl.mineseekdestroy.service;
 
 import dev.foxgirl.mineseekdestroy.Game;
+import dev.foxgirl.mineseekdestroy.GameProperties;
 import dev.foxgirl.mineseekdestroy.GameTeam;
 import dev.foxgirl.mineseekdestroy.mixin.MixinEntityPositionS2CPacket;
 import dev.foxgirl.mineseekdestroy.util.Console;
 import dev.foxgirl.mineseekdestroy.util.Reflector;
 import dev.foxgirl.mineseekdestroy.util.collect.ImmutableList;
-import net.minecraft.entity.Entity;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.network.packet.s2c.play.EntityPositionS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -53,6 +56,11 @@ public final class InvisibilityService extends Service {
         }
     }
 
+    @Override
+    protected void setup() {
+        addPacketFilter(EntityPositionS2CPacket.class, 0, this::handlePositionPacket);
+    }
+
     private int broadcastTicks = 0;
 
     private void broadcast() {
@@ -69,8 +77,116 @@ public final class InvisibilityService extends Service {
         }
     }
 
+    /**
+     * Immutable visibility matrix of every online player (viewer) against every other online player (subject),
+     * rebuilt on the server thread and read from {@link #handlePositionPacket} without locking.
+     */
+    private static final class Visibility {
+        private static final Visibility EMPTY = new Visibility(new Int2IntOpenHashMap(0), 0, new long[0], new EntityPositionS2CPacket[0]);
+
+        private final Int2IntOpenHashMap indices;
+        private final int stride;
+        private final long[] hidden;
+        private final EntityPositionS2CPacket[] packets;
+
+        private Visibility(Int2IntOpenHashMap indices, int stride, long[] hidden, EntityPositionS2CPacket[] packets) {
+            this.indices = indices;
+            this.stride = stride;
+            this.hidden = hidden;
+            this.packets = packets;
+        }
+
+        private @Nullable EntityPositionS2CPacket lookup(int viewerId, int subjectId) {
+            int viewer = indices.getOrDefault(viewerId, -1);
+            if (viewer < 0) return null;
+            int subject = indices.getOrDefault(subjectId, -1);
+            if (subject < 0) return null;
+            if ((hidden[viewer * stride + (subject >>> 6)] & (1L << subject)) == 0) return null;
+            return packets[subject];
+        }
+    }
+
+    private static final int KEY_ALIVE = 1 << 8;
+    private static final int KEY_DISGUISED = 1 << 9;
+    private static final int KEY_BLIMP = 1 << 10;
+    private static final int KEY_OPERATOR = 1 << 11;
+
+    private volatile Visibility visibility = Visibility.EMPTY;
+    private int[] visibilityKey = new int[0];
+    private Object visibilityProperties = null;
+
+    private void updateVisibility() {
+        var context = getContext();
+        var properties = getProperties();
+
+        boolean active = isActive();
+        boolean waiting = getState().isWaiting();
+
+        var entities = context.playerManager.getPlayerList();
+        int count = entities.size();
+
+        var teams = new GameTeam[count];
+        var key = new int[count * 2 + 1];
+        key[count * 2] = (active ? 1 : 0) | (waiting ? 2 : 0);
+
+        for (int i = 0; i < count; i++) {
+            var entity = entities.get(i);
+            var player = context.getPlayer(entity);
+            var team = player.getTeam();
+            int flags = team.ordinal();
+            if (entity.isAlive()) flags |= KEY_ALIVE;
+            if (context.disguiseService.isDisguised(player)) flags |= KEY_DISGUISED;
+            if (getGame().isOperator(entity)) flags |= KEY_OPERATOR;
+            if (team.isSpectator() && (properties.getRegionBlimp().contains(entity) || properties.getRegionBlimpBalloons().contains(entity))) {
+                flags |= KEY_BLIMP;
+            }
+            teams[i] = team;
+            key[i * 2] = entity.getId();
+            key[i * 2 + 1] = flags;
+        }
+
+        if (Arrays.equals(key, visibilityKey) && properties == visibilityProperties) return;
+        visibilityKey = key;
+        visibilityProperties = properties;
+
+        var indices = new Int2IntOpenHashMap(count);
+        int stride = (count + 63) >>> 6;
+        var hidden = new long[count * stride];
+        var packets = new EntityPositionS2CPacket[count];
+
+        for (int subject = 0; subject < count; subject++) {
+            int subjectFlags = key[subject * 2 + 1];
+            indices.put(key[subject * 2], subject);
+
+            if ((subjectFlags & KEY_ALIVE) == 0) continue;
+
+            boolean any = false;
+            for (int viewer = 0; viewer < count; viewer++) {
+                if (viewer == subject) continue;
+                int viewerFlags = key[viewer * 2 + 1];
+                boolean isHidden;
+                if ((subjectFlags & KEY_DISGUISED) != 0) {
+                    isHidden = true;
+                } else if (waiting || (viewerFlags & KEY_OPERATOR) != 0 || (viewerFlags & KEY_ALIVE) == 0) {
+                    isHidden = false;
+                } else {
+                    isHidden = !isVisibleTo(active, teams[viewer], teams[subject], (subjectFlags & KEY_BLIMP) != 0);
+                }
+                if (isHidden) {
+                    hidden[viewer * stride + (subject >>> 6)] |= 1L << subject;
+                    any = true;
+                }
+            }
+            if (any) packets[subject] = createInvisiblePositionPacket(key[subject * 2]);
+        }
+
+        visibility = new Visibility(indices, stride, hidden, packets);
+    }
+
     @Override
     public void update() {
+        updateVisibility();
+
         boolean immediate = false;
         synchronized (lock) {
             if (activePrevious != activeCurrent) {
@@ -86,30 +202,52 @@ public final class InvisibilityService extends Service {
         }
     }
 
-    private boolean isVisibleTo(GameTeam targetTeam, GameTeam packetTeam, Entity packetEntity) {
-        return isActive()
-            ? isVisibleToActive(targetTeam, packetTeam, packetEntity)
-            : isVisibleToInactive(targetTeam, packetTeam, packetEntity);
+    private static boolean isVisibleTo(boolean active, GameTeam targetTeam, GameTeam packetTeam, boolean packetInBlimp) {
+        return active
+            ? isVisibleToActive(targetTeam, packetTeam)
+            : isVisibleToInactive(targetTeam, packetTeam, packetInBlimp);
     }
-    private static boolean isVisibleToActive(GameTeam targetTeam, GameTeam packetTeam, Entity packetEntity) {
+    private static boolean isVisibleToActive(GameTeam targetTeam, GameTeam packetTeam) {
         return switch (targetTeam) {
             case NONE, SKIP, GHOST, OPERATOR -> true;
             case DUELIST -> packetTeam.isOperator();
             default -> packetTeam.isOperator() || packetTeam == targetTeam;
         };
     }
-    private static boolean isVisibleToInactive(GameTeam targetTeam, GameTeam packetTeam, Entity packetEntity) {
+    private static boolean isVisibleToInactive(GameTeam targetTeam, GameTeam packetTeam, boolean packetInBlimp) {
         return switch (targetTeam) {
             case NONE, SKIP, GHOST, OPERATOR -> true;
-            default ->
-                !packetTeam.isSpectator() ||
-                Game.getGameProperties().getRegionBlimp().contains(packetEntity) ||
-                Game.getGameProperties().getRegionBlimpBalloons().contains(packetEntity);
+            default -> !packetTeam.isSpectator() || packetInBlimp;
         };
     }
 
+    private static final int INVISIBLE_PACKETS_LIMIT = 1024;
+
+    private static final Int2ObjectOpenHashMap<EntityPositionS2CPacket> invisiblePackets = new Int2ObjectOpenHashMap<>();
+    private static GameProperties invisiblePacketsProperties = null;
+
+    /**
+     * Gets a packet that moves the entity with the given ID to {@link GameProperties#getPositionHell()}.
+     * Packets are cached per entity ID until the game properties change, and may be shared between recipients.
+     */
     public static EntityPositionS2CPacket createInvisiblePositionPacket(int id) {
-        var position = Game.getGameProperties().getPositionHell();
+        var properties = Game.getGameProperties();
+        synchronized (invisiblePackets) {
+            if (invisiblePacketsProperties != properties || invisiblePackets.size() >= INVISIBLE_PACKETS_LIMIT) {
+                invisiblePacketsProperties = properties;
+                invisiblePackets.clear();
+            }
+            var packet = invisiblePackets.get(id);
+            if (packet == null) {
+                packet = createInvisiblePositionPacket(id, properties);
+                invisiblePackets.put(id, packet);
+            }
+            return packet;
+        }
+    }
+
+    private static EntityPositionS2CPacket createInvisiblePositionPacket(int id, GameProperties properties) {
+        var position = properties.getPositionHell();
         var packet = Reflector.create(EntityPositionS2CPacket.class);
         var access = (MixinEntityPositionS2CPacket) packet;
         access.mineseekdestroy$setId(id);
@@ -119,37 +257,18 @@ public final class InvisibilityService extends Service {
         return packet;
     }
 
+    /**
+     * Replaces position packets of players that should be hidden from the target player, reading only the visibility
+     * matrix built during the last {@link #update()}.
+     */
     public @Nullable EntityPositionS2CPacket handlePositionPacket(@NotNull EntityPositionS2CPacket packet, @NotNull ServerPlayerEntity targetEntity) {
         Objects.requireNonNull(packet, "Argument 'packet'");
         Objects.requireNonNull(targetEntity, "Argument 'targetEntity'");
 
-        var context = getContext();
-
         var packetId = packet.getId();
         if (packetId == targetEntity.getId()) return null;
 
-        var packetEntity = targetEntity.getWorld().getEntityById(packetId);
-        if (packetEntity == null || !packetEntity.isAlive()) return null;
-
-        var packetPlayer = context.getPlayer(packetEntity);
-        if (packetPlayer == null) return null;
-
-        var targetPlayer = context.getPlayer(targetEntity);
-
-        var packetTeam = packetPlayer.getTeam();
-        var targetTeam = targetPlayer.getTeam();
-
-        if (context.disguiseService.isDisguised(packetPlayer)) {
-            return createInvisiblePositionPacket(packetId);
-        }
-
-        if (getState().isWaiting()) return null;
-
-        if (getGame().isOperator(targetEntity) || !targetEntity.isAlive()) return null;
-
-        if (isVisibleTo(targetTeam, packetTeam, packetEntity)) return null;
-
-        return createInvisiblePositionPacket(packetId);
+        return visibility.lookup(targetEntity.getId(), packetId);
     }
 
 }
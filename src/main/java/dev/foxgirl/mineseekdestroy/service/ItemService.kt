@@ -5,7 +5,6 @@ import dev.foxgirl.mineseekdestroy.GameItems
 import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameTeam
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.collect.enumMapOf
 import dev.foxgirl.mineseekdestroy.util.collect.immutableSetOf
 import dev.foxgirl.mineseekdestroy.util.collect.toImmutableSet
@@ -40,7 +39,7 @@ class ItemService : Service() {
 
     fun addStackToInventory(entity: ServerPlayerEntity, stack: ItemStack, wait: Boolean) {
         val copy = stack.copy()
-        Async.go {
+        scope.go {
             if (wait) {
                 delay(1.0)
             }
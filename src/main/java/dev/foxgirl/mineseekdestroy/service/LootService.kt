@@ -37,9 +37,8 @@ class LootService : Service() {
     }
 
     override fun setup() {
-        Editor
-            .queue(world, properties.regionAll)
-            .search { containerBlocks.contains(it.block) }
+        BlockIndex.of(properties)
+            .search(world, "loot-containers", properties.regionAll) { containerBlocks.contains(it.block) }
             .thenApply { results ->
                 logger.info("LootService search for containers returned ${results.size} result(s)")
                 positions = results.map { it.pos }
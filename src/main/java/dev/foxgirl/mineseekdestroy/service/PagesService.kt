@@ -9,7 +9,6 @@ import dev.foxgirl.mineseekdestroy.service.PagesService.Action.*
 import dev.foxgirl.mineseekdestroy.service.SummonsService.Theology
 import dev.foxgirl.mineseekdestroy.service.SummonsService.Theology.*
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.Scheduler
 import dev.foxgirl.mineseekdestroy.util.async.await
 import dev.foxgirl.mineseekdestroy.util.async.awaitCancelled
@@ -55,7 +54,7 @@ class PagesService : Service() {
 
             protected fun lockDelay(user: GamePlayer, seconds: Double) {
                 lock(user)
-                Scheduler.delay(seconds) { unlock(user) }
+                scope.delay(seconds, Scheduler.Priority.CRITICAL) { unlock(user) }
             }
             protected fun lock(user: GamePlayer) = user.activePages().add(type)
             protected fun unlock(user: GamePlayer) = user.activePages().remove(type)
@@ -75,7 +74,7 @@ class PagesService : Service() {
                 }
                 return if (times >= 5) SUMMON else randomAction(exclude, times + 1)
             }
-            Async.go {
+            roundScope.go {
                 val actions = arrayOfNulls<Action>(3).also {
                     it[0] = randomAction(it)
                     it[1] = randomAction(it)
@@ -108,6 +107,11 @@ class PagesService : Service() {
     private val activePages = mutableMapOf<GamePlayer, MutableSet<PageType>>()
     private fun GamePlayer.activePages(): MutableSet<PageType> = activePages.getOrPut(this, ::mutableSetOf)
 
+    fun handleRoundEnd() {
+        // Pages locked by round tasks would otherwise stay locked once those tasks are cancelled
+        activePages.clear()
+    }
+
     private fun resultApplyToStack(userEntity: ServerPlayerEntity, stack: ItemStack, action: () -> ActionResult): ActionResult {
         if (lockedPlayers.contains(userEntity.uuid)) { return ActionResult.FAIL }; lockedPlayers.add(userEntity.uuid)
         val result = action()
@@ -120,7 +124,7 @@ class PagesService : Service() {
                 stack.decrement(1)
             }
         }
-        Scheduler.now { userEntity.playerScreenHandler.syncState() }
+        scope.now { userEntity.playerScreenHandler.syncState() }
         return result
     }
 
@@ -361,21 +365,24 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesDeepRegen") {
-                        lifetime()
-                            .withTimeout(10.0)
-                            .withCondition { user.isAlive && !state.isWaiting }
-                            .innerExecute {
-                                while (true) {
-                                    delay(0.5)
-                                    user.entity?.air = -10
-                                    delay(0.5)
-                                    user.entity?.let { if (it.air > -20) it.air = -40 }
+                    roundScope.go("pagesDeepRegen") {
+                        try {
+                            lifetime()
+                                .withTimeout(10.0)
+                                .withCondition { user.isAlive && !state.isWaiting }
+                                .innerExecute {
+                                    while (true) {
+                                        delay(0.5)
+                                        user.entity?.air = -10
+                                        delay(0.5)
+                                        user.entity?.let { if (it.air > -20) it.air = -40 }
+                                    }
                                 }
-                            }
-                            .awaitCancelled()
-                        user.entity?.air = 0
-                        unlock(user)
+                                .awaitCancelled()
+                        } finally {
+                            user.entity?.air = 0
+                            unlock(user)
+                        }
                     }
                     userEntity.addEffect(REGENERATION, 15.0, 3)
                     userEntity.sparkles()
@@ -403,7 +410,7 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesDeepBusted") {
+                    roundScope.go("pagesDeepBusted") {
                         while (true) {
                             delay(0.1)
 
@@ -434,7 +441,7 @@ class PagesService : Service() {
                     return ActionResult.SUCCESS
                     /*
                     lock(user)
-                    Async.go("pagesDeepBusted") {
+                    roundScope.go("pagesDeepBusted") {
                         val blockPositions = HashSet<BlockPos>()
                         val chunkPositions = HashSet<ChunkPos>()
 
@@ -531,7 +538,7 @@ class PagesService : Service() {
             )  {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesOccultRegen") {
+                    roundScope.go("pagesOccultRegen") {
                         lifetime()
                             .withTimeout(10.0)
                             .withCondition { user.isAlive && !state.isWaiting }
@@ -640,22 +647,25 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesCosmosRegen") {
-                        delay(1.0)
-                        var minimumHealth = user.entity?.health ?: 5000.0F
-                        while (true) {
-                            delay()
-                            if (state.isWaiting || !user.isAlive) break
-                            val userEntity = user.entity ?: continue
-                            val currentHealth = userEntity.health
-                            if (currentHealth > minimumHealth) {
-                                userEntity.damage(userEntity.damageSources.magic(), (currentHealth - minimumHealth) + 0.05F)
-                            } else if (currentHealth < minimumHealth) {
-                                minimumHealth = currentHealth
+                    roundScope.go("pagesCosmosRegen") {
+                        try {
+                            delay(1.0)
+                            var minimumHealth = user.entity?.health ?: 5000.0F
+                            while (true) {
+                                delay()
+                                if (state.isWaiting || !user.isAlive) break
+                                val userEntity = user.entity ?: continue
+                                val currentHealth = userEntity.health
+                                if (currentHealth > minimumHealth) {
+                                    userEntity.damage(userEntity.damageSources.magic(), (currentHealth - minimumHealth) + 0.05F)
+                                } else if (currentHealth < minimumHealth) {
+                                    minimumHealth = currentHealth
+                                }
                             }
+                        } finally {
+                            user.entity?.removeEffect(ABSORPTION)
+                            unlock(user)
                         }
-                        user.entity?.removeEffect(ABSORPTION)
-                        unlock(user)
                     }
                     userEntity.addEffect(ABSORPTION, Double.MAX_VALUE, 2)
                     userEntity.sparkles()
@@ -692,7 +702,7 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     val team = user.team
-                    Scheduler.interval(0.5) { schedule ->
+                    roundScope.interval(0.5) { schedule ->
                         if (state.isPlaying) {
                             for ((player, playerEntity) in playerEntitiesNormal) {
                                 if (player.isAlive) {
@@ -770,28 +780,31 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesBarterRegen") {
+                    roundScope.go("pagesBarterRegen") {
                         val subscription = eventGenericAttack.subscribe { (evUser, evUserEntity, evVictimEntity) ->
                             if (context.getPlayer(evVictimEntity).let { !it.isAlive || !it.isPlayingOrGhost }) return@subscribe
                             if (evUser != user) return@subscribe
                             if (evUserEntity.getAttackCooldownProgress(0.0F) > 0.95F) {
                                 evUserEntity.healHearts(1.0)
-                                Scheduler.delay(0.1) {
+                                scope.delay(0.1, Scheduler.Priority.COSMETIC) {
                                     evUserEntity.play(SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.PLAYERS, 0.333, 0.75)
                                 }
                             } else {
                                 evUserEntity.hurtHearts(1.0) { it.magic() }
-                                Scheduler.delay(0.1) {
+                                scope.delay(0.1, Scheduler.Priority.COSMETIC) {
                                     evUserEntity.play(SoundEvents.BLOCK_NOTE_BLOCK_PLING.value(), SoundCategory.PLAYERS, 0.333, 0.25)
                                 }
                             }
                         }
-                        awaitAny(
-                            innerExecute { delay(30.0) },
-                            innerExecute { until(1.0) { state.isWaiting || !user.isAlive } },
-                        )
-                        subscription.unsubscribe()
-                        unlock(user)
+                        try {
+                            awaitAny(
+                                innerExecute { delay(30.0) },
+                                innerExecute { until(1.0) { state.isWaiting || !user.isAlive } },
+                            )
+                        } finally {
+                            subscription.unsubscribe()
+                            unlock(user)
+                        }
                     }
                     userEntity.sparkles()
                     return ActionResult.SUCCESS
@@ -823,7 +836,7 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesBarterBusted") {
+                    roundScope.go("pagesBarterBusted") {
                         val blocks = mutableMapOf<BlockPos, Pair<Long, Int>>()
                         var iteration = 0L
                         while (true) {
@@ -907,7 +920,7 @@ class PagesService : Service() {
                 text("turn all blocks in a ") + text("4 block radius").bold() + " into fire!",
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
-                    Async.go("pagesFlameArea") {
+                    roundScope.go("pagesFlameArea") {
                         var running = true; innerGo { delay(3.0); running = false }
                         val center = userEntity.blockPos.up()
                         val region = center.let {
@@ -917,14 +930,17 @@ class PagesService : Service() {
                             )
                         }
                         val positions = center.around(3.0).toMutableSet()
-                        while (running) {
-                            Editor
-                                .queue(world, region)
-                                .edit { _, x, y, z -> if (BlockPos(x, y, z) in positions) Blocks.FIRE.defaultState else null }
-                                .await()
-                            delay()
+                        try {
+                            while (running) {
+                                Editor
+                                    .queue(world, region)
+                                    .edit { _, x, y, z -> if (BlockPos(x, y, z) in positions) Blocks.FIRE.defaultState else null }
+                                    .await()
+                                delay()
+                            }
+                        } finally {
+                            world.setBlockState(center, Blocks.AIR.defaultState)
                         }
-                        world.setBlockState(center, Blocks.AIR.defaultState)
                     }
                     userEntity.sparkles()
                     return ActionResult.SUCCESS
@@ -944,18 +960,21 @@ class PagesService : Service() {
             ) {
                 override fun use(user: GamePlayer, userEntity: ServerPlayerEntity): ActionResult {
                     lock(user)
-                    Async.go("pagesFlameBusted") {
-                        until { state.isWaiting || !user.isAlive }
-                        user.entity?.let {
-                            it.removeEffect(SPEED)
-                            it.removeEffect(HASTE)
-                            it.removeEffect(STRENGTH)
-                            it.removeEffect(JUMP_BOOST)
-                            it.removeEffect(RESISTANCE)
-                            it.removeEffect(NIGHT_VISION)
-                            it.removeEffect(WITHER)
+                    roundScope.go("pagesFlameBusted") {
+                        try {
+                            until { state.isWaiting || !user.isAlive }
+                        } finally {
+                            user.entity?.let {
+                                it.removeEffect(SPEED)
+                                it.removeEffect(HASTE)
+                                it.removeEffect(STRENGTH)
+                                it.removeEffect(JUMP_BOOST)
+                                it.removeEffect(RESISTANCE)
+                                it.removeEffect(NIGHT_VISION)
+                                it.removeEffect(WITHER)
+                            }
+                            unlock(user)
                         }
-                        unlock(user)
                     }
                     userEntity.addEffect(SPEED, Double.MAX_VALUE, 4)
                     userEntity.addEffect(HASTE, Double.MAX_VALUE, 2)
@@ -6,13 +6,17 @@ import dev.foxgirl.mineseekdestroy.GamePlayer;
 import dev.foxgirl.mineseekdestroy.GameProperties;
 import dev.foxgirl.mineseekdestroy.state.GameState;
 import dev.foxgirl.mineseekdestroy.util.Console;
+import dev.foxgirl.mineseekdestroy.util.PacketFilters;
+import dev.foxgirl.mineseekdestroy.util.async.Scope;
 import kotlin.Pair;
+import net.minecraft.network.packet.Packet;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -33,6 +37,29 @@ public abstract class Service {
     protected void setup() {
     }
 
+    private final List<PacketFilters.Registration> packetFilters = new ArrayList<>();
+
+    /**
+     * Registers a packet filter that is unregistered automatically when this service is destroyed.
+     * @see PacketFilters#register(String, Class, int, PacketFilters.Filter)
+     */
+    protected final <P extends Packet<?>> @NotNull PacketFilters.Registration addPacketFilter(@NotNull Class<P> packetClass, int order, @NotNull PacketFilters.Filter<? super P> filter) {
+        var registration = PacketFilters.register(getClass().getSimpleName(), packetClass, order, filter);
+        packetFilters.add(registration);
+        return registration;
+    }
+
+    public final void destroy() {
+        for (var registration : packetFilters) {
+            registration.unregister();
+        }
+        packetFilters.clear();
+        teardown();
+    }
+
+    protected void teardown() {
+    }
+
     public void update() {
     }
 
@@ -44,6 +71,13 @@ public abstract class Service {
         return context;
     }
 
+    protected final @NotNull Scope getScope() {
+        return getContext().scope;
+    }
+    protected final @NotNull Scope getRoundScope() {
+        return getContext().getRoundScope();
+    }
+
     protected final @NotNull MinecraftServer getServer() {
         return getContext().server;
     }
@@ -1,7 +1,7 @@
 package dev.foxgirl.mineseekdestroy.service
 
+import dev.foxgirl.mineseekdestroy.util.BlockIndex
 import dev.foxgirl.mineseekdestroy.util.Console
-import dev.foxgirl.mineseekdestroy.util.Editor
 import dev.foxgirl.mineseekdestroy.util.Inventories
 import dev.foxgirl.mineseekdestroy.util.async.terminate
 import dev.foxgirl.mineseekdestroy.util.stackOf
@@ -22,9 +22,8 @@ class SmokerService : Service() {
     }
 
     override fun setup() {
-        Editor
-            .queue(world, properties.regionAll)
-            .search { it.block === Blocks.SMOKER }
+        BlockIndex.of(properties)
+            .search(world, "smokers", properties.regionAll) { it.block === Blocks.SMOKER }
             .thenApply { results ->
                 logger.info("SmokerService search for smokers returned ${results.size} result(s)")
                 positions = results.map { it.pos }
@@ -191,12 +191,12 @@ class SoulService : Service() {
     private fun updateAnchors(enabled: Boolean) {
         val queue = Editor.queue(world, properties.regionBlimp)
         if (enabled) {
-            queue.edit { state, _, _, _ ->
-                if (state.block === Blocks.RESPAWN_ANCHOR) state.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.MAX_CHARGES) else null
+            queue.replace({ it.block === Blocks.RESPAWN_ANCHOR }) {
+                it.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.MAX_CHARGES)
             }
         } else {
-            queue.edit { state, _, _, _ ->
-                if (state.block === Blocks.RESPAWN_ANCHOR) state.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.NO_CHARGES) else null
+            queue.replace({ it.block === Blocks.RESPAWN_ANCHOR }) {
+                it.with(RespawnAnchorBlock.CHARGES, RespawnAnchorBlock.NO_CHARGES)
             }
         }
     }
@@ -235,7 +235,7 @@ class SoulService : Service() {
         victim.team = GameTeam.DUELIST
         victim.isAlive = true
 
-        Async.background().withTimeout(0.1).go {
+        scope.withTimeout(0.1).go {
             while (true) {
                 aggressor.teleport(properties.positionDuel1)
                 victim.teleport(properties.positionDuel2)
@@ -4,7 +4,6 @@ import dev.foxgirl.mineseekdestroy.Game
 import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameProperties
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.await
 import net.minecraft.block.Blocks
 import net.minecraft.entity.effect.StatusEffectInstance
@@ -82,7 +81,7 @@ class SpecialBoosterService : Service() {
                     )
                 },
             )
-            Async.go {
+            scope.go {
                 while (true) {
                     delay(1.0)
                     val context = Game.getGame().context ?: break
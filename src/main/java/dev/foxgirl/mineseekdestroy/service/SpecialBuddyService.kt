@@ -40,7 +40,7 @@ class SpecialBuddyService : Service() {
             console.sendError(messageFailure, buddy.displayName)
         }
         if (!enabled && warning) {
-            warning = false; Scheduler.delay(30.0) { warning = true }
+            warning = false; scope.delay(30.0, Scheduler.Priority.CRITICAL) { warning = true }
             console.sendError("Buddy system is currently disabled, be warned")
         }
     }
@@ -64,7 +64,7 @@ class SpecialBuddyService : Service() {
                 if (playerFollowerEntity != null) {
                     val damageSource = world.damageSources.create(Game.DAMAGE_TYPE_HEARTBREAK, playerTarget.entity, null)
                     val damageAmount = Rules.buddyHealthPenalty.toFloat()
-                    Scheduler.now { playerFollowerEntity.damage(damageSource, damageAmount) }
+                    scope.now(Scheduler.Priority.CRITICAL) { playerFollowerEntity.damage(damageSource, damageAmount) }
                 }
             }
         }
@@ -22,7 +22,7 @@ class SpecialFamilyGuyService : Service() {
 
     fun handleFamilyGuyBlockPlaced(player: GamePlayer, blockHit: BlockHitResult) {
         val playerEntity = player.entity ?: return
-        Async.go { handleFamilyGuyBlockPlacedAsync(player, playerEntity, blockHit) }
+        scope.go { handleFamilyGuyBlockPlacedAsync(player, playerEntity, blockHit) }
     }
 
     private suspend fun handleFamilyGuyBlockPlacedAsync(player: GamePlayer, playerEntity: PlayerEntity, blockHit: BlockHitResult) {
@@ -66,10 +66,10 @@ class SpecialFamilyGuyService : Service() {
             Broadcast.sendParticles(ParticleTypes.POOF, 0.25F, 5, world, it.toCenterPos())
         }
 
-        Scheduler.delay(0.05) {
+        scope.delay(0.05, Scheduler.Priority.COSMETIC) {
             notesHarp.forEach { Broadcast.sendSound(SoundEvents.BLOCK_NOTE_BLOCK_HARP.value(), SoundCategory.RECORDS, 4.0F, it, world, center) }
         }
-        Scheduler.delay(0.45) {
+        scope.delay(0.45, Scheduler.Priority.COSMETIC) {
             notesBass.forEach { Broadcast.sendSound(SoundEvents.BLOCK_NOTE_BLOCK_BASS.value(), SoundCategory.RECORDS, 4.0F, it, world, center) }
         }
 
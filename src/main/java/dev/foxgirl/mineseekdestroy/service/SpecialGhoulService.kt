@@ -84,7 +84,7 @@ class SpecialGhoulService : Service() {
     override fun update() {
         if (properties != GameProperties.Macander) return
         if (schedule == null && spawnEnabled) {
-            schedule = Scheduler.delay(spawnDelay()) {
+            schedule = scope.delay(spawnDelay()) {
                 schedule = null
                 spawn()
             }
@@ -6,7 +6,6 @@ import dev.foxgirl.mineseekdestroy.GamePlayer
 import dev.foxgirl.mineseekdestroy.GameTeam
 import dev.foxgirl.mineseekdestroy.service.SummonsService.Theology.*
 import dev.foxgirl.mineseekdestroy.util.*
-import dev.foxgirl.mineseekdestroy.util.async.Async
 import dev.foxgirl.mineseekdestroy.util.async.Scheduler
 import dev.foxgirl.mineseekdestroy.util.async.await
 import dev.foxgirl.mineseekdestroy.util.async.terminate
@@ -190,6 +189,9 @@ class SummonsService : Service() {
 
     private inner class DeepDeepSummon(options: Options) : Summon(options) {
         override val timeout get() = Duration.ofSeconds(30)
+
+        private val journal = Editor.journal(world)
+
         override fun perform() {
             val blocks = immutableSetOf<Block>(
                 Blocks.OAK_SAPLING, Blocks.SPRUCE_SAPLING, Blocks.BIRCH_SAPLING,
@@ -220,7 +222,7 @@ class SummonsService : Service() {
                 Blocks.TRIPWIRE,
             )
 
-            Async.go {
+            roundScope.go {
                 val (start, end) = properties.regionFlood
                 var y = start.y; while (y < end.y) {
                     delay(3.0); if (!isReady) break
@@ -238,13 +240,12 @@ class SummonsService : Service() {
 
                     Editor
                         .queue(world, region)
-                        .edit { state, _, _, _ ->
+                        .journal(journal)
+                        .replace({ it.isAir || blocks.contains(it.block) || (it.contains(Properties.WATERLOGGED) && !it.get(Properties.WATERLOGGED)) }) { state ->
                             if (state.isAir || blocks.contains(state.block)) {
                                 Blocks.WATER.defaultState
-                            } else if (state.contains(Properties.WATERLOGGED)) {
-                                state.with(Properties.WATERLOGGED, true)
                             } else {
-                                null
+                                state.with(Properties.WATERLOGGED, true)
                             }
                         }
                         .await()
@@ -255,18 +256,7 @@ class SummonsService : Service() {
             world.setWeatherRain()
         }
         override fun stop() {
-            Editor
-                .queue(world, properties.regionFlood)
-                .edit { state, _, _, _ ->
-                    if (state.block === Blocks.WATER) {
-                        return@edit Blocks.AIR.defaultState
-                    }
-                    if (state.contains(Properties.WATERLOGGED)) {
-                        return@edit state.with(Properties.WATERLOGGED, false)
-                    }
-                    return@edit null
-                }
-                .terminate()
+            journal.undo().terminate()
 
             world.setWeatherClear()
         }
@@ -394,7 +384,7 @@ class SummonsService : Service() {
                     continue
                 }
 
-                Scheduler.now { entity.damage(source, amount) }
+                scope.now(Scheduler.Priority.CRITICAL) { entity.damage(source, amount) }
             }
         }
     }
@@ -508,7 +498,7 @@ class SummonsService : Service() {
 
             for ((player, entity) in playerEntitiesNormal) {
                 if (player.isGhost) {
-                    Scheduler.now { entity.damage(world.damageSources.create(Game.DAMAGE_TYPE_ABYSS), 5000.0F) }
+                    scope.now(Scheduler.Priority.CRITICAL) { entity.damage(world.damageSources.create(Game.DAMAGE_TYPE_ABYSS), 5000.0F) }
                 }
             }
 
@@ -538,14 +528,11 @@ class SummonsService : Service() {
 
             Editor
                 .queue(world, properties.regionPlayable)
-                .edit { state, _, _, _ ->
+                .replace({ blocks.contains(it.block) || (it.contains(Properties.WATERLOGGED) && it.get(Properties.WATERLOGGED)) }) { state ->
                     if (blocks.contains(state.block)) {
-                        return@edit Blocks.AIR.defaultState
+                        return@replace Blocks.AIR.defaultState
                     }
-                    if (state.contains(Properties.WATERLOGGED)) {
-                        return@edit state.with(Properties.WATERLOGGED, false)
-                    }
-                    return@edit null
+                    return@replace state.with(Properties.WATERLOGGED, false)
                 }
                 .terminate()
 
@@ -607,10 +594,9 @@ class SummonsService : Service() {
         fun findTheology(pos: BlockPos): Theology? =
             findTheologyAt(pos.up()) ?: findTheologyAt(pos.down())
 
-        Async.go {
-            altars = Editor
-                .queue(world, properties.regionAll)
-                .search { it.block === Blocks.FLETCHING_TABLE }
+        scope.go {
+            altars = BlockIndex.of(properties)
+                .search(world, "altars", properties.regionAll) { it.block === Blocks.FLETCHING_TABLE }
                 .await()
                 .mapNotNull { Altar(it.pos, findTheology(it.pos) ?: return@mapNotNull null) }
                 .associateBy { it.pos }
@@ -773,7 +759,7 @@ class SummonsService : Service() {
         lightning.setCosmetic(true)
         world.spawnEntity(lightning)
 
-        Async.go {
+        roundScope.go {
             val shulker = EntityType.SHULKER.create(world)!!
             shulker.setPosition(options.altar.pos.let { Vec3d(it.x.toDouble() + 0.5, it.y.toDouble(), it.z.toDouble() + 0.5) })
             shulker.isAiDisabled = true
@@ -792,12 +778,14 @@ class SummonsService : Service() {
                     }
                 }
 
-            delay(Rules.summonsAltarGlowDuration)
-
             try {
-                context.scoreboard.removeScoreHolderFromTeam(shulker.scoreboardName, context.getTeam(GameTeam.OPERATOR))
-                shulker.remove(Entity.RemovalReason.DISCARDED)
-            } catch (ignored: IllegalStateException) {}
+                delay(Rules.summonsAltarGlowDuration)
+            } finally {
+                try {
+                    context.scoreboard.removeScoreHolderFromTeam(shulker.scoreboardName, context.getTeam(GameTeam.OPERATOR))
+                    shulker.remove(Entity.RemovalReason.DISCARDED)
+                } catch (ignored: IllegalStateException) {}
+            }
         }
     }
 
@@ -1075,7 +1063,7 @@ class SummonsService : Service() {
             }
         }
 
-        Scheduler.interval(3.0) { schedule ->
+        scope.interval(3.0) { schedule ->
             if (iterator.hasNext()) {
                 val (name, provider) = iterator.next()
 
@@ -18,6 +18,8 @@ public class PlayingGameState extends RunningGameState {
 
     @Override
     protected @Nullable GameState onSetup(@NotNull GameContext context) {
+        context.beginRound();
+
         context.game.sendInfo("Round started! KILL!");
 
         context.invisibilityService.executeSetDisabled(Game.CONSOLE_OPERATORS);
@@ -16,6 +16,8 @@ public class SkirmishingGameState extends DuelingGameState {
 
     @Override
     protected @Nullable GameState onSetup(@NotNull GameContext context) {
+        context.beginRound();
+
         context.game.sendInfo("Skirmish started! FIGHT!");
 
         context.invisibilityService.executeSetDisabled(Game.CONSOLE_OPERATORS);
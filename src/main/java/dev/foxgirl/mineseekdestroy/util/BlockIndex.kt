@@ -0,0 +1,161 @@
+package dev.foxgirl.mineseekdestroy.util
+
+import dev.foxgirl.mineseekdestroy.Game
+import dev.foxgirl.mineseekdestroy.GameProperties
+import dev.foxgirl.mineseekdestroy.util.async.Async
+import dev.foxgirl.mineseekdestroy.util.async.await
+import it.unimi.dsi.fastutil.HashCommon
+import net.minecraft.block.Block
+import net.minecraft.nbt.NbtCompound
+import net.minecraft.nbt.NbtIo
+import net.minecraft.server.world.ServerWorld
+import net.minecraft.util.math.BlockPos
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+
+/**
+ * Persistent index of [Editor] search results for a map, stored in [Game.CONFIGDIR].
+ * Each entry is validated against per-chunk checksums of its region and a fingerprint of its predicate, so the region
+ * is only rescanned if the map or the predicate has changed.
+ */
+class BlockIndex private constructor(private val name: String) {
+
+    private class Entry(val region: Region, val fingerprint: Long, val checksums: LongArray, val positions: LongArray, val states: IntArray) {
+        constructor(region: Region, fingerprint: Long, checksums: LongArray, results: List<Editor.Result>) : this(
+            region, fingerprint, checksums,
+            LongArray(results.size) { results[it].pos.asLong() },
+            IntArray(results.size) { Block.getRawIdFromState(results[it].state) },
+        )
+
+        constructor(nbt: NbtCompound) : this(
+            Region(nbt["Start"].toBlockPos(), nbt["End"].toBlockPos()),
+            // Entries saved without a fingerprint never match, and are rescanned
+            if (nbt.contains("Fingerprint")) nbt.getLong("Fingerprint") else 0L,
+            nbt["Checksums"].toLongArray(),
+            nbt["Positions"].toLongArray(),
+            nbt["States"].toIntArray(),
+        )
+
+        fun toNbt() = nbtCompoundOf(
+            "Start" to region.start,
+            "End" to region.end,
+            "Fingerprint" to fingerprint,
+            "Checksums" to checksums,
+            "Positions" to positions,
+            "States" to states,
+        )
+
+        fun results(): List<Editor.Result>? {
+            return List(positions.size) {
+                Editor.Result(BlockPos.fromLong(positions[it]), Block.STATE_IDS.get(states[it]) ?: return null)
+            }
+        }
+    }
+
+    private val path: Path = Game.CONFIGDIR.resolve("mnsnd-index-${name}.bin")
+
+    // Loaded on the IO thread, so loading is ordered before any saves, and then only accessed on the server thread
+    private val entries: CompletableFuture<HashMap<String, Entry>> by lazy {
+        CompletableFuture.supplyAsync(::load, executor)
+    }
+
+    private fun load(): HashMap<String, Entry> {
+        val entries = HashMap<String, Entry>()
+        if (!Files.exists(path)) return entries
+        try {
+            val nbt = NbtIo.read(path)!!
+            val nbtEntries = nbt["Entries"].asCompound()
+            for (key in nbtEntries.keys) {
+                entries[key] = Entry(nbtEntries[key].asCompound())
+            }
+            Game.LOGGER.info("Loaded block index ${name} with ${entries.size} entries")
+        } catch (cause: Exception) {
+            entries.clear()
+            Game.LOGGER.error("Failed to load block index ${name}", cause)
+        }
+        return entries
+    }
+
+    private fun save(entries: HashMap<String, Entry>) {
+        val nbt = nbtCompoundOf("Entries" to entries.mapValues { it.value.toNbt() })
+        executor.execute {
+            try {
+                NbtIo.write(nbt, path)
+                Game.LOGGER.info("Saved block index ${name}")
+            } catch (cause: Exception) {
+                Game.LOGGER.error("Failed to save block index ${name}", cause)
+            }
+        }
+    }
+
+    /**
+     * Searches the region for blocks matching the predicate, using the results stored under the key if the region is unchanged.
+     * The key identifies the search, results stored under it are discarded if the predicate now matches different block states.
+     * @param world World to search in.
+     * @param key Unique key of this search.
+     * @param region Region to search in.
+     * @param predicate Predicate to filter blocks by.
+     * @return [CompletableFuture] that is resolved with a list of search results.
+     */
+    fun search(world: ServerWorld, key: String, region: Region, predicate: Editor.Predicate): CompletableFuture<List<Editor.Result>> =
+        Async.execute {
+            val entries = this@BlockIndex.entries.await()
+            val fingerprint = fingerprint(predicate)
+
+            val entry = entries[key]
+            if (entry != null && entry.region == region && entry.fingerprint == fingerprint) {
+                val checksums = Editor.queue(world, region).checksum().await()
+                if (entry.checksums.contentEquals(checksums)) {
+                    val results = entry.results()
+                    if (results != null) {
+                        Game.LOGGER.info("Block index ${name} search \"${key}\" is unchanged, loaded ${results.size} result(s)")
+                        return@execute results
+                    }
+                }
+            }
+
+            val (promiseResults, promiseChecksums) = Editor.queue(world, region) { queue -> queue.search(predicate) to queue.checksum() }
+            val results = promiseResults.await()
+
+            entries[key] = Entry(region, fingerprint, promiseChecksums.await(), results)
+            save(entries)
+
+            results
+        }
+
+    companion object {
+        /**
+         * Computes a fingerprint of the set of block states matched by a predicate.
+         * @param predicate Predicate to fingerprint.
+         * @return Fingerprint, never zero.
+         */
+        private fun fingerprint(predicate: Editor.Predicate): Long {
+            var fingerprint = 1L
+            for (state in Block.STATE_IDS) {
+                if (predicate.test(state)) {
+                    fingerprint = HashCommon.murmurHash3(fingerprint xor Block.getRawIdFromState(state).toLong())
+                }
+            }
+            return if (fingerprint != 0L) fingerprint else 1L
+        }
+
+        private val executor = Executors.newSingleThreadExecutor { Thread(it, "BlockIndexIOThread").apply { isDaemon = true } }
+
+        private val instances = HashMap<GameProperties, BlockIndex>()
+
+        /**
+         * Returns the block index for the given map, loading it from disk in the background when it is first searched.
+         * @param properties Map to get the block index of.
+         * @return Block index instance.
+         */
+        @JvmStatic
+        fun of(properties: GameProperties): BlockIndex {
+            synchronized(instances) {
+                return instances.getOrPut(properties) { BlockIndex(properties.name) }
+            }
+        }
+    }
+
+}
@@ -2,7 +2,9 @@ package dev.foxgirl.mineseekdestroy.util;
 
 import dev.foxgirl.mineseekdestroy.Game;
 import dev.foxgirl.mineseekdestroy.GamePlayer;
+import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
 import net.minecraft.network.packet.s2c.play.ParticleS2CPacket;
 import net.minecraft.network.packet.s2c.play.PlaySoundS2CPacket;
 import net.minecraft.particle.ParticleEffect;
@@ -17,6 +19,9 @@ import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -46,6 +51,74 @@ public class Broadcast {
         send((player, playerEntity) -> packet);
     }
 
+    @FunctionalInterface
+    public interface PlayerFilter {
+        boolean test(@NotNull GamePlayer player, @NotNull ServerPlayerEntity playerEntity);
+    }
+
+    private static final int BUNDLE_LIMIT = 4096;
+
+    private static final LinkedHashMap<ServerPlayerEntity, List<Packet<ClientPlayPacketListener>>> batch = new LinkedHashMap<>();
+
+    /**
+     * Queues packets to be sent to each player at the end of the tick, bundled together with all other packets queued
+     * for that player during the tick. Must be called on the server thread.
+     * <p>
+     * Queued packets are sent after every packet sent directly during the same tick, so packets that must arrive in
+     * order with directly sent packets should not be queued.
+     * Packets of classes with registered {@link PacketFilters} cannot be queued and must be sent directly instead,
+     * since filters would otherwise see them only at the end of the tick, against state that may have changed.
+     * @param packetSupplier Supplier of the packet for each player, may return null to skip a player.
+     * @throws IllegalArgumentException If a supplied packet is of a class with registered packet filters.
+     */
+    @SuppressWarnings("unchecked")
+    public static void queue(@NotNull PacketSupplier packetSupplier) {
+        Objects.requireNonNull(packetSupplier, "Argument 'packetSupplier'");
+
+        var context = Game.getGame().getContext();
+        if (context == null) return;
+
+        for (var playerEntity : context.playerManager.getPlayerList()) {
+            var packet = packetSupplier.get(context.getPlayer(playerEntity), playerEntity);
+            if (packet != null) {
+                if (PacketFilters.isFiltered(packet.getClass())) {
+                    throw new IllegalArgumentException("Packet " + packet.getClass().getSimpleName() + " has packet filters and cannot be queued");
+                }
+                batch.computeIfAbsent(playerEntity, key -> new ArrayList<>()).add((Packet<ClientPlayPacketListener>) packet);
+            }
+        }
+    }
+
+    public static void queue(@Nullable Packet<?> packet) {
+        queue((player, playerEntity) -> packet);
+    }
+
+    public static void queue(@Nullable Packet<?> packet, @NotNull PlayerFilter playerFilter) {
+        Objects.requireNonNull(playerFilter, "Argument 'playerFilter'");
+        queue((player, playerEntity) -> playerFilter.test(player, playerEntity) ? packet : null);
+    }
+
+    /**
+     * Sends all queued packets, called at the end of every tick after all other packets of the tick have been sent.
+     */
+    public static void flush() {
+        if (batch.isEmpty()) return;
+
+        for (var entry : batch.entrySet()) {
+            var networkHandler = entry.getKey().networkHandler;
+            var packets = entry.getValue();
+            if (packets.size() == 1) {
+                networkHandler.sendPacket(packets.get(0));
+            } else {
+                for (int i = 0, size = packets.size(); i < size; i += BUNDLE_LIMIT) {
+                    networkHandler.sendPacket(new BundleS2CPacket(packets.subList(i, Math.min(size, i + BUNDLE_LIMIT))));
+                }
+            }
+        }
+
+        batch.clear();
+    }
+
     @FunctionalInterface
     public interface PositionSupplier {
         @Nullable Position get(@NotNull GamePlayer player, @NotNull ServerPlayerEntity playerEntity);
@@ -80,10 +153,14 @@ public class Broadcast {
         Objects.requireNonNull(category, "Argument 'category'");
         Objects.requireNonNull(positionSupplier, "Argument 'positionSupplier'");
 
+        send(createSoundSupplier(sound, category, volume, pitch, positionSupplier));
+    }
+
+    private static PacketSupplier createSoundSupplier(SoundEvent sound, SoundCategory category, float volume, float pitch, PositionSupplier positionSupplier) {
         var entry = Registries.SOUND_EVENT.getEntry(sound);
         var seed = ThreadLocalRandom.current().nextLong();
 
-        send((player, playerEntity) -> {
+        return (player, playerEntity) -> {
             var pos = positionSupplier.get(player, playerEntity);
             if (pos == null) return null;
 
@@ -91,7 +168,7 @@ public class Broadcast {
                 entry, category, pos.getX(), pos.getY(), pos.getZ(),
                 volume, pitch, seed
             );
-        });
+        };
     }
 
     public static void sendSound(@NotNull SoundEvent sound, @NotNull SoundCategory category, float volume, float pitch, @NotNull World world, @NotNull Position position) {
@@ -102,6 +179,16 @@ public class Broadcast {
         sendSound(sound, category, volume, pitch, (player, playerEntity) -> new Vec3d(playerEntity.getX(), playerEntity.getEyeY(), playerEntity.getZ()));
     }
 
+    /**
+     * Queues a sound played at the eyes of each player, see {@link #queue(PacketSupplier)}.
+     */
+    public static void queueSound(@NotNull SoundEvent sound, @NotNull SoundCategory category, float volume, float pitch) {
+        Objects.requireNonNull(sound, "Argument 'sound'");
+        Objects.requireNonNull(category, "Argument 'category'");
+
+        queue(createSoundSupplier(sound, category, volume, pitch, (player, playerEntity) -> new Vec3d(playerEntity.getX(), playerEntity.getEyeY(), playerEntity.getZ())));
+    }
+
     public static void sendSoundPing() {
         var volume = (float) Game.getGame().getRuleDouble(Game.RULE_PING_VOLUME);
         var pitch = (float) Game.getGame().getRuleDouble(Game.RULE_PING_PITCH);
@@ -1,22 +1,37 @@
 package dev.foxgirl.mineseekdestroy.util;
 
 import dev.foxgirl.mineseekdestroy.Game;
-import dev.foxgirl.mineseekdestroy.util.collect.ImmutableList;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
 import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.LightUpdateS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.server.world.ServerChunkManager;
 import net.minecraft.server.world.ServerLightingProvider;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.PalettedContainer;
 import net.minecraft.world.chunk.WorldChunk;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
 
 public final class Editor {
@@ -34,49 +49,129 @@ public final class Editor {
         boolean test(@NotNull BlockState state);
     }
 
+    @FunctionalInterface
+    public interface Transform {
+        @Nullable BlockState apply(@NotNull BlockState state);
+    }
+
     public record Result(@NotNull BlockPos pos, @NotNull BlockState state) {
     }
 
     public static final class Queue {
-        private final ArrayList<Operation> list = new ArrayList<>();
+        private final ArrayList<Operation> list;
+        private final Queue root;
+        private final ServerWorld world;
+        private final Journal journal;
+        private final String source;
         private boolean consumed = false;
 
-        private Queue() {
+        private Queue(ServerWorld world, String source) {
+            this.list = new ArrayList<>();
+            this.root = this;
+            this.world = world;
+            this.journal = null;
+            this.source = source;
+        }
+
+        private Queue(Queue root, Journal journal) {
+            this.list = root.list;
+            this.root = root;
+            this.world = root.world;
+            this.journal = journal;
+            this.source = root.source;
         }
 
         private void add(Operation operation) {
             synchronized (LOCK) {
-                if (consumed) {
+                if (root.consumed) {
                     throw new IllegalStateException("Queue has been consumed, cannot enqueue new operations");
                 }
                 list.add(operation);
+                if (operation.journal() != null) {
+                    operation.journal().pending++;
+                }
             }
         }
 
+        /**
+         * Returns a view of this queue that records every block changed by its edit operations into the journal.
+         * Search operations enqueued through the view are not affected.
+         * @param journal Journal to record changes into.
+         * @return Queue view that enqueues into this queue.
+         * @throws IllegalArgumentException If the journal belongs to a different world.
+         * @throws NullPointerException If {@code journal} is null.
+         */
+        public @NotNull Queue journal(@NotNull Journal journal) {
+            Objects.requireNonNull(journal, "Argument 'journal'");
+            if (journal.world != world) {
+                throw new IllegalArgumentException("Argument 'journal' belongs to a different world");
+            }
+            return new Queue(root, journal);
+        }
+
         private Operation[] consume() {
-            consumed = true;
+            root.consumed = true;
             return list.toArray(new Operation[0]);
         }
 
         /**
          * Enqueues an edit operation into this queue.
          * @param action Action to perform.
-         * @return {@link CompletableFuture} that is resolved when the operation completes.
+         * @return {@link CompletableFuture} that is resolved when the operation has completed for the entire region.
          * @throws IllegalStateException If the queue has already been consumed.
          * @throws NullPointerException If {@code action} is null.
          */
         public @NotNull CompletableFuture<@Nullable Void> edit(@NotNull Action action) {
             Objects.requireNonNull(action, "Argument 'action'");
             var promise = new CompletableFuture<Void>();
-            var operation = new EditOperation(promise, action);
+            var operation = new EditOperation(promise, null, action, null, journal);
+            add(operation);
+            return promise;
+        }
+
+        /**
+         * Enqueues an edit operation into this queue, only applied to blocks that match the filter.
+         * Chunk sections whose palette contains no matching block states are skipped entirely.
+         * @param filter Predicate to filter blocks by, must only depend on the block state.
+         * @param action Action to perform on matching blocks.
+         * @return {@link CompletableFuture} that is resolved when the operation has completed for the entire region.
+         * @throws IllegalStateException If the queue has already been consumed.
+         * @throws NullPointerException If either of the provided arguments are null.
+         */
+        public @NotNull CompletableFuture<@Nullable Void> edit(@NotNull Predicate filter, @NotNull Action action) {
+            Objects.requireNonNull(filter, "Argument 'filter'");
+            Objects.requireNonNull(action, "Argument 'action'");
+            var promise = new CompletableFuture<Void>();
+            var operation = new EditOperation(promise, filter, action, null, journal);
+            add(operation);
+            return promise;
+        }
+
+        /**
+         * Enqueues a replace operation into this queue, transforming blocks that match the filter.
+         * Since the transform does not depend on position, chunk sections that are filled with a single block state
+         * are rewritten in one step, and sections whose palette contains no matching block states are skipped entirely.
+         * @param filter Predicate to filter blocks by, must only depend on the block state.
+         * @param transform Transform to apply to matching blocks.
+         * @return {@link CompletableFuture} that is resolved when the operation has completed for the entire region.
+         * @throws IllegalStateException If the queue has already been consumed.
+         * @throws NullPointerException If either of the provided arguments are null.
+         */
+        public @NotNull CompletableFuture<@Nullable Void> replace(@NotNull Predicate filter, @NotNull Transform transform) {
+            Objects.requireNonNull(filter, "Argument 'filter'");
+            Objects.requireNonNull(transform, "Argument 'transform'");
+            var promise = new CompletableFuture<Void>();
+            var operation = new EditOperation(promise, filter, (state, x, y, z) -> transform.apply(state), transform, journal);
             add(operation);
             return promise;
         }
 
         /**
          * Enqueues a search operation into this queue for specific blocks, filtered by the predicate.
+         * If the queue only contains search operations, the search is performed on a worker thread against a snapshot
+         * of the region, so the predicate must not access any world state.
          * @param predicate Predicate to filter blocks by.
-         * @return {@link CompletableFuture} that is resolved with a list of search results.
+         * @return {@link CompletableFuture} that is resolved with a list of search results once the entire region has been searched.
          * @throws IllegalStateException If the queue has already been consumed.
          * @throws NullPointerException If {@code predicate} is null.
          */
@@ -87,6 +182,20 @@ public final class Editor {
             add(operation);
             return promise;
         }
+
+        /**
+         * Enqueues a checksum operation into this queue, which hashes the block states of every chunk in the region.
+         * Checksums cover whole chunk sections, so blocks outside the region that share a section with it are included.
+         * Equal checksums mean the block states are unchanged, but different checksums do not guarantee a change.
+         * @return {@link CompletableFuture} that is resolved with one checksum per chunk, ordered by chunk X then Z.
+         * @throws IllegalStateException If the queue has already been consumed.
+         */
+        public @NotNull CompletableFuture<long @NotNull []> checksum() {
+            var promise = new CompletableFuture<long[]>();
+            var operation = new ChecksumOperation(promise);
+            add(operation);
+            return promise;
+        }
     }
 
     private static final class Target {
@@ -115,18 +224,32 @@ public final class Editor {
     }
 
     private interface Operation {
+        @Nullable Predicate filter();
         Action action();
+        @Nullable Transform transform();
+        @Nullable Journal journal();
         void complete();
         void completeExceptionally(Throwable cause);
     }
 
     private static final class EditOperation implements Operation {
         private final CompletableFuture<Void> promise;
+        private final Predicate filter;
         private final Action action;
+        private final Transform transform;
+        private final Journal journal;
 
-        private EditOperation(CompletableFuture<Void> promise, Action action) {
+        private EditOperation(CompletableFuture<Void> promise, Predicate filter, Action action, Transform transform, Journal journal) {
             this.promise = promise;
+            this.filter = filter;
             this.action = action;
+            this.transform = transform;
+            this.journal = journal;
+        }
+
+        @Override
+        public @Nullable Predicate filter() {
+            return filter;
         }
 
         @Override
@@ -134,6 +257,16 @@ public final class Editor {
             return action;
         }
 
+        @Override
+        public @Nullable Transform transform() {
+            return transform;
+        }
+
+        @Override
+        public @Nullable Journal journal() {
+            return journal;
+        }
+
         @Override
         public void complete() {
             promise.complete(null);
@@ -158,17 +291,31 @@ public final class Editor {
 
         @Override
         public @Nullable BlockState apply(@NotNull BlockState state, int x, int y, int z) {
-            if (predicate.test(state)) {
-                results.add(new Result(new BlockPos(x, y, z), state));
-            }
+            // Only called for blocks that already passed the filter, which is the predicate itself
+            results.add(new Result(new BlockPos(x, y, z), state));
             return null;
         }
 
+        @Override
+        public @Nullable Predicate filter() {
+            return predicate;
+        }
+
         @Override
         public Action action() {
             return this;
         }
 
+        @Override
+        public @Nullable Transform transform() {
+            return null;
+        }
+
+        @Override
+        public @Nullable Journal journal() {
+            return null;
+        }
+
         @Override
         public void complete() {
             promise.complete(results);
@@ -180,19 +327,85 @@ public final class Editor {
         }
     }
 
-    private static final class Task {
-        private final Target target;
-        private final Operation[] operations;
+    private static final class ChecksumOperation implements Operation, Action, Predicate {
+        private final CompletableFuture<long[]> promise;
 
-        public Task(Target target, Operation[] operations) {
-            this.target = target;
-            this.operations = operations;
+        private long[] checksums;
+
+        private ChecksumOperation(CompletableFuture<long[]> promise) {
+            this.promise = promise;
         }
 
-        private boolean performChunk(WorldChunk chunk, Region region, ServerWorld world, ServerLightingProvider lighting, Action[] actions) {
-            var cPos = chunk.getPos();
-            int offsetX = cPos.x << 4;
-            int offsetZ = cPos.z << 4;
+        @Override
+        public boolean test(@NotNull BlockState state) {
+            // Never matches, checksums are computed per chunk instead of per block
+            return false;
+        }
+
+        @Override
+        public @Nullable BlockState apply(@NotNull BlockState state, int x, int y, int z) {
+            return null;
+        }
+
+        @Override
+        public @Nullable Predicate filter() {
+            return this;
+        }
+
+        @Override
+        public Action action() {
+            return this;
+        }
+
+        @Override
+        public @Nullable Transform transform() {
+            return null;
+        }
+
+        @Override
+        public @Nullable Journal journal() {
+            return null;
+        }
+
+        @Override
+        public void complete() {
+            promise.complete(checksums);
+        }
+
+        @Override
+        public void completeExceptionally(Throwable cause) {
+            promise.completeExceptionally(cause);
+        }
+    }
+
+    private record Snapshot(int offsetX, int offsetY, int offsetZ, PalettedContainer<BlockState> states) {
+    }
+
+    private static final class Scan extends RecursiveTask<ArrayList<Result>[]> {
+        private static final int THRESHOLD = 8;
+
+        private final Region region;
+        private final Predicate[] predicates;
+        private final List<Snapshot> snapshots;
+
+        private long elapsed;
+        private long tested;
+
+        private Scan(Region region, Predicate[] predicates, List<Snapshot> snapshots) {
+            this.region = region;
+            this.predicates = predicates;
+            this.snapshots = snapshots;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ArrayList<Result>[] scan() {
+            var predicates = this.predicates;
+            int predicatesCount = predicates.length;
+
+            var results = (ArrayList<Result>[]) new ArrayList[predicatesCount];
+            for (int i = 0; i < predicatesCount; i++) {
+                results[i] = new ArrayList<>(16);
+            }
 
             var posMin = region.getStart();
             var posMax = region.getEnd();
@@ -200,18 +413,11 @@ public final class Editor {
             int posMinX = posMin.getX(), posMaxX = posMax.getX();
             int posMinZ = posMin.getZ(), posMaxZ = posMax.getZ();
 
-            int bottomY = world.getBottomY();
-
-            var sections = chunk.getSectionArray();
-            int sectionsCount = sections.length;
-
-            var mutated = false;
-            var mutatedSections = new boolean[sectionsCount];
-
-            for (int i = 0; i < sectionsCount; i++) {
-                boolean mutatedSection = false;
-                var section = sections[i];
-                int offsetY = (i << 4) + bottomY;
+            for (var snapshot : snapshots) {
+                var states = snapshot.states();
+                int offsetX = snapshot.offsetX();
+                int offsetY = snapshot.offsetY();
+                int offsetZ = snapshot.offsetZ();
                 for (int y = 0; y < 16; y++) {
                     int posY = y + offsetY;
                     if (posMinY > posY || posMaxY < posY) continue;
@@ -221,208 +427,1382 @@ public final class Editor {
                         for (int x = 0; x < 16; x++) {
                             int posX = x + offsetX;
                             if (posMinX > posX || posMaxX < posX) continue;
-                            var stateOld = section.getBlockState(x, y, z);
-                            for (var action : actions) {
-                                var stateNew = action.apply(stateOld, posX, posY, posZ);
-                                if (stateNew != null && stateNew != stateOld) {
-                                    section.setBlockState(x, y, z, stateNew);
-                                    stateOld = stateNew;
-                                    mutatedSection = true;
+                            var state = states.get(x, y, z);
+                            tested++;
+                            for (int i = 0; i < predicatesCount; i++) {
+                                if (predicates[i].test(state)) {
+                                    results[i].add(new Result(new BlockPos(posX, posY, posZ), state));
                                 }
                             }
                         }
                     }
                 }
-                if (mutatedSection) {
-                    mutated = true;
-                    mutatedSections[i] = true;
-                }
-            }
-
-            /*
-            for (int i = 0; i < sectionsCount; i++) {
-                if (mutatedSections[i]) {
-                    lighting.setSectionStatus(ChunkSectionPos.from(chunk.getPos(), i), true);
-                }
             }
-            if (mutated) {
-                lighting.propagateLight(chunk.getPos());
-            }
-            */
 
-            return mutated;
+            return results;
         }
 
-        private List<WorldChunk> performTask() {
-            Target target = this.target;
-            Operation[] operations = this.operations;
-
-            Region region = target.region;
-            ServerWorld world = target.world;
+        @Override
+        protected ArrayList<Result>[] compute() {
+            var start = System.nanoTime();
+            try {
+                return computeTimed();
+            } finally {
+                elapsed = System.nanoTime() - start;
+            }
+        }
 
-            ServerChunkManager manager = world.getChunkManager();
-            ServerLightingProvider lighting = manager.getLightingProvider();
+        private ArrayList<Result>[] computeTimed() {
+            int size = snapshots.size();
+            if (size <= THRESHOLD) {
+                return scan();
+            }
 
-            int chunksCount = (int) region.getChunkCount();
+            int middle = size >>> 1;
+            var scanLeft = new Scan(region, predicates, snapshots.subList(0, middle));
+            var scanRight = new Scan(region, predicates, snapshots.subList(middle, size));
 
-            var chunks = new ArrayList<WorldChunk>(chunksCount);
-            var chunksMutated = new ArrayList<WorldChunk>(chunksCount);
+            scanLeft.fork();
+            var resultsRight = scanRight.compute();
+            var resultsLeft = scanLeft.join();
 
-            var cPosMin = region.getChunkStart();
-            var cPosMax = region.getChunkEnd();
-            int cPosMinX = cPosMin.x, cPosMaxX = cPosMax.x;
-            int cPosMinZ = cPosMin.z, cPosMaxZ = cPosMax.z;
+            tested = scanLeft.tested + scanRight.tested;
 
-            for (int x = cPosMinX; x <= cPosMaxX; x++) {
-                for (int z = cPosMinZ; z <= cPosMaxZ; z++) {
-                    var chunk = manager.getChunk(x, z, ChunkStatus.FULL, true);
-                    if (chunk != null) chunks.add((WorldChunk) chunk);
-                }
+            // Merge left then right, keeping results in the same block order as a sequential scan
+            for (int i = 0, length = resultsLeft.length; i < length; i++) {
+                resultsLeft[i].addAll(resultsRight[i]);
             }
 
-            var actions = new Action[operations.length];
-            for (int i = 0, length = operations.length; i < length; i++) {
-                actions[i] = operations[i].action();
-            }
+            return resultsLeft;
+        }
+    }
 
-            for (WorldChunk chunk : chunks) {
-                var mutated = performChunk(chunk, region, world, lighting, actions);
-                if (mutated) chunksMutated.add(chunk);
-            }
+    private record ChecksumSection(int index, PalettedContainer<BlockState> states) {
+    }
 
-            for (Operation operation : operations) {
-                operation.complete();
-            }
+    private static final class Checksum extends RecursiveTask<long[]> {
+        private final int length;
+        private final List<ChecksumSection> sections;
 
-            return chunksMutated;
+        private long elapsed;
+
+        private Checksum(int length, List<ChecksumSection> sections) {
+            this.length = length;
+            this.sections = sections;
         }
 
-        private List<WorldChunk> perform() {
+        @Override
+        protected long[] compute() {
             var start = System.nanoTime();
-            var success = true;
             try {
-                return performTask();
-            } catch (Throwable cause) {
-                for (Operation operation : operations) {
-                    try {
-                        operation.completeExceptionally(cause);
-                    } catch (Throwable ignored) {
-                    }
+                // Sections are captured in chunk order and in ascending order within each chunk, so hashes chain the same way as inline checksums
+                var checksums = new long[length];
+                for (var section : sections) {
+                    checksums[section.index()] = checksumSection(checksums[section.index()], section.states().data);
                 }
-                success = false;
+                return checksums;
             } finally {
-                var ms = (double) (System.nanoTime() - start) * 1e-6D;
-                var message = new StringBuilder(64);
-                message.append("Editor performed task (");
-                message.append(success ? "success" : "failure");
-                message.append(") for ");
-                message.append(operations.length);
-                message.append(" operation(s) in ");
-                message.append(new DecimalFormat("#.##").format(ms));
-                message.append("ms");
-                if (success) {
-                    if (ms >= 2.0) Game.LOGGER.info(message);
-                    else Game.LOGGER.debug(message);
-                } else {
-                    Game.LOGGER.warn(message);
-                }
+                elapsed = System.nanoTime() - start;
             }
-            return ImmutableList.of();
         }
     }
 
-    private static final Object LOCK = new Object();
-    private static final LinkedHashMap<Target, Queue> QUEUES = new LinkedHashMap<>();
-
-    /**
-     * Creates a queue of operations for the given world and region.
-     * Note that queues should be used immediately and discarded, as they become invalid after the next tick.
-     * @param world World to perform operations in.
-     * @param region Region to perform operations in.
-     * @return Operation queue instance.
-     * @throws NullPointerException If either of the provided arguments are null.
-     */
-    public static @NotNull Queue queue(@NotNull ServerWorld world, @NotNull Region region) {
-        Objects.requireNonNull(world, "Argument 'world'");
-        Objects.requireNonNull(region, "Argument 'region'");
-        synchronized (LOCK) {
-            return QUEUES.computeIfAbsent(new Target(world, region), (key) -> new Queue());
+    private static long checksumSection(long checksum, PalettedContainer.Data<BlockState> data) {
+        var palette = data.palette();
+        int paletteSize = palette.getSize();
+        checksum = HashCommon.murmurHash3(checksum ^ paletteSize);
+        // Global palettes map indices directly to state ids, so their entries do not need to be hashed
+        if (paletteSize <= 256) {
+            for (int j = 0; j < paletteSize; j++) {
+                checksum = HashCommon.murmurHash3(checksum ^ Block.getRawIdFromState(palette.get(j)));
+            }
+        }
+        for (long value : data.storage().getData()) {
+            checksum = HashCommon.murmurHash3(checksum ^ value);
         }
+        return checksum;
     }
 
     /**
-     * Creates a queue of operations for the given world and region, calling the provided function with the new operation queue.
-     * The provided function will be executed while synchronized on the global editor lock, ensuring that the queue instance remains valid and no other operations are enqueued concurrently.
-     * @param world World to perform operations in.
-     * @param region Region to perform operations in.
-     * @param function Function called with the new operation queue.
-     * @return Return value of the provided function.
-     * @throws NullPointerException If either of the provided arguments are null.
+     * Journal of block changes made by edit operations, see {@link Queue#journal(Journal)}.
+     * Changes are stored per chunk section as the oldest and newest state of every changed block, in paletted
+     * containers, so memory is proportional to the number of touched sections and the variety of their block states.
+     * Journals are recorded into and restored on the server thread only.
      */
-    public static <T> T queue(@NotNull ServerWorld world, @NotNull Region region, @NotNull Function<@NotNull Queue, T> function) {
-        Objects.requireNonNull(world, "Argument 'world'");
-        Objects.requireNonNull(region, "Argument 'region'");
-        Objects.requireNonNull(function, "Argument 'function'");
-        synchronized (LOCK) {
-            return function.apply(queue(world, region));
+    public static final class Journal {
+        private static final class Entry {
+            private final long[] changed = new long[64];
+            private final PalettedContainer<BlockState> before;
+            private final PalettedContainer<BlockState> after;
+            private int count = 0;
+
+            private Entry(BlockState before, BlockState after) {
+                this.before = new PalettedContainer<>(Block.STATE_IDS, before, PalettedContainer.PaletteProvider.BLOCK_STATE);
+                this.after = new PalettedContainer<>(Block.STATE_IDS, after, PalettedContainer.PaletteProvider.BLOCK_STATE);
+            }
+
+            private static int index(int x, int y, int z) {
+                return (y << 8) | (z << 4) | x;
+            }
+
+            private boolean isChanged(int index) {
+                return (changed[index >>> 6] & (1L << index)) != 0;
+            }
         }
-    }
 
-    /**
-     * Executes all enqueued operations, must be run on the main server thread.
-     * @throws IllegalStateException If invoked from the wrong thread.
-     */
-    public static void update() {
-        var server = Game.getGame().getServer();
+        private final ServerWorld world;
+        private Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+        private int count = 0;
+        private int pending = 0;
 
-        if (!server.isOnThread()) {
-            throw new IllegalStateException("Editor execution started from wrong thread");
+        private Journal(ServerWorld world) {
+            this.world = world;
         }
 
-        ArrayList<Task> tasks;
+        private Entry entry(int x, int y, int z, BlockState stateOld, BlockState stateNew) {
+            long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            var entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(stateOld, stateNew);
+                entries.put(key, entry);
+            }
+            return entry;
+        }
 
-        synchronized (LOCK) {
-            if (QUEUES.isEmpty()) {
-                return;
+        private void record(int x, int y, int z, BlockState stateOld, BlockState stateNew) {
+            var entry = entry(x, y, z, stateOld, stateNew);
+            x &= 15; y &= 15; z &= 15;
+            int index = Entry.index(x, y, z);
+            if (!entry.isChanged(index)) {
+                // Only the first recorded change keeps its old state, so that undo restores the oldest state
+                entry.changed[index >>> 6] |= 1L << index;
+                entry.count++;
+                count++;
+                entry.before.set(x, y, z, stateOld);
             }
+            entry.after.set(x, y, z, stateNew);
+        }
 
-            tasks = new ArrayList<>(QUEUES.size());
+        private void recordSection(int offsetX, int offsetY, int offsetZ, BlockState stateOld, BlockState stateNew) {
+            long key = ChunkSectionPos.asLong(offsetX >> 4, offsetY >> 4, offsetZ >> 4);
+            if (!entries.containsKey(key)) {
+                // Section has not been recorded yet, the whole section changes from one state to another
+                var entry = new Entry(stateOld, stateNew);
+                Arrays.fill(entry.changed, -1L);
+                entry.count = 4096;
+                count += 4096;
+                entries.put(key, entry);
+                return;
+            }
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        record(x + offsetX, y + offsetY, z + offsetZ, stateOld, stateNew);
+                    }
+                }
+            }
+        }
 
-            for (var entry : QUEUES.entrySet()) {
-                var target = entry.getKey();
-                var queue = entry.getValue();
-                tasks.add(new Task(target, queue.consume()));
+        private void release() {
+            synchronized (LOCK) {
+                pending--;
             }
+        }
+
+        /**
+         * Returns the number of blocks currently recorded in this journal, must be called on the server thread.
+         * @return Number of recorded blocks.
+         */
+        public int size() {
+            return count;
+        }
 
-            QUEUES.clear();
+        /**
+         * Restores every block recorded in this journal to its oldest recorded state, and clears the journal.
+         * The restore waits for edit operations still recording into this journal to complete, and blocks that have
+         * been changed again since they were last recorded are left as they are.
+         * @return {@link CompletableFuture} that is resolved when all recorded blocks have been restored, or rejected if
+         *   any chunk could not be loaded.
+         */
+        public @NotNull CompletableFuture<@Nullable Void> undo() {
+            var promise = new CompletableFuture<Void>();
+            synchronized (LOCK) {
+                RESTORES.add(new Restore(this, promise));
+            }
+            return promise;
         }
+    }
 
-        tasks.sort(Comparator.comparingLong((task) -> task.target.region.getBlockCount()));
+    private static final class Restore {
+        private final Journal journal;
+        private final CompletableFuture<Void> promise;
+
+        private long[] keys;
+        private Journal.Entry[] entries;
+        private int cursor;
+        private Throwable failure;
 
-        var chunkLists = new ArrayList<List<WorldChunk>>(tasks.size());
-        var chunkCount = 0;
+        private Restore(Journal journal, CompletableFuture<Void> promise) {
+            this.journal = journal;
+            this.promise = promise;
+        }
 
-        for (Task task : tasks) {
-            var chunks = task.perform();
-            if (chunks.isEmpty()) continue;
-            chunkLists.add(chunks);
-            chunkCount = Math.max(chunkCount, (int) task.target.region.getChunkCount());
+        private boolean start() {
+            synchronized (LOCK) {
+                if (journal.pending > 0) return false;
+            }
+            // Restores run on the server thread, the same thread that records into journals
+            keys = journal.entries.keySet().toLongArray();
+            entries = journal.entries.values().toArray(new Journal.Entry[0]);
+            cursor = keys.length;
+            journal.entries = new Long2ObjectLinkedOpenHashMap<>();
+            journal.count = 0;
+            return true;
         }
 
-        if (chunkLists.isEmpty()) return;
+        private boolean perform(long deadline, Map<WorldChunk, Changes> chunksChanged) {
+            if (keys == null && !start()) {
+                return false;
+            }
+
+            try {
+                var manager = journal.world.getChunkManager();
 
-        var chunks = new LinkedHashSet<WorldChunk>(chunkCount * 2);
-        chunkLists.forEach(chunks::addAll);
+                // Most recently recorded sections first
+                while (cursor > 0) {
+                    int i = --cursor;
 
-        var distance = server.getPlayerManager().getViewDistance() + 4;
+                    long key = keys[i];
+                    var entry = entries[i];
+                    entries[i] = null;
 
-        for (WorldChunk chunk : chunks) {
-            var world = (ServerWorld) chunk.getWorld();
-            var packet = new ChunkDataS2CPacket(chunk, world.getChunkManager().getLightingProvider(), null, null);
-            for (ServerPlayerEntity player : world.getPlayers()) {
-                if (player.getChunkPos().getChebyshevDistance(chunk.getPos()) > distance) continue;
-                player.networkHandler.sendPacket(packet);
+                    int sectionX = ChunkSectionPos.unpackX(key);
+                    int sectionY = ChunkSectionPos.unpackY(key);
+                    int sectionZ = ChunkSectionPos.unpackZ(key);
+
+                    WorldChunk chunk;
+                    try {
+                        chunk = (WorldChunk) manager.getChunk(sectionX, sectionZ, ChunkStatus.FULL, true);
+                        if (chunk == null) throw new IllegalStateException("Chunk is unavailable");
+                    } catch (Throwable cause) {
+                        // Remaining sections are still restored, but the undo fails rather than silently leaving changes behind
+                        Game.LOGGER.error("Editor failed to load chunk " + sectionX + ", " + sectionZ + " for restore", cause);
+                        if (failure == null) failure = cause;
+                        chunk = null;
+                    }
+                    if (chunk != null) {
+                        int index = chunk.sectionCoordToIndex(sectionY);
+                        var section = chunk.getSection(index);
+                        for (int j = 0; j < 4096; j++) {
+                            if (!entry.isChanged(j)) continue;
+                            int x = j & 15, z = (j >>> 4) & 15, y = j >>> 8;
+                            var stateBefore = entry.before.get(x, y, z);
+                            if (section.getBlockState(x, y, z) == entry.after.get(x, y, z) && stateBefore != section.getBlockState(x, y, z)) {
+                                section.setBlockState(x, y, z, stateBefore);
+                                chunksChanged.computeIfAbsent(chunk, Changes::new).add(index, x, y, z);
+                            }
+                        }
+                    }
+
+                    if (System.nanoTime() >= deadline) break;
+                }
+            } catch (Throwable cause) {
+                promise.completeExceptionally(cause);
+                return true;
+            }
+
+            if (cursor > 0) {
+                return false;
+            }
+
+            if (failure != null) {
+                promise.completeExceptionally(failure);
+            } else {
+                promise.complete(null);
+            }
+            return true;
+        }
+    }
+
+    private static final class Changes {
+        /**
+         * Number of changed blocks in a chunk above which a full chunk packet is sent instead of delta packets.
+         */
+        private static final int DELTA_LIMIT = 2048;
+
+        private final WorldChunk chunk;
+        private final ShortSet[] positions;
+        private final boolean[] rewritten;
+        private int count = 0;
+        private boolean full = false;
+
+        private Changes(WorldChunk chunk) {
+            int length = chunk.getSectionArray().length;
+            this.chunk = chunk;
+            this.positions = new ShortSet[length];
+            this.rewritten = new boolean[length];
+        }
+
+        private ShortSet section(int index) {
+            var set = positions[index];
+            if (set == null) {
+                set = positions[index] = new ShortOpenHashSet();
             }
+            return set;
+        }
+
+        private void add(int index, int x, int y, int z) {
+            if (section(index).add((short) (x << 8 | z << 4 | y))) count++;
+        }
+
+        private void add(int index, ShortSet set) {
+            if (positions[index] == null) {
+                positions[index] = set;
+                count += set.size();
+            } else {
+                var iterator = set.iterator();
+                while (iterator.hasNext()) {
+                    if (positions[index].add(iterator.nextShort())) count++;
+                }
+            }
+        }
+
+        private void addSection(int index) {
+            section(index);
+            rewritten[index] = true;
+            full = true;
+        }
+
+        private void send(int distance, Traffic traffic) {
+            var world = (ServerWorld) chunk.getWorld();
+            var cPos = chunk.getPos();
+
+            var players = new ArrayList<ServerPlayerEntity>();
+            for (ServerPlayerEntity player : world.getPlayers()) {
+                if (player.getChunkPos().getChebyshevDistance(cPos) > distance) continue;
+                players.add(player);
+            }
+            if (players.isEmpty()) return;
+
+            var packets = new ArrayList<Packet<?>>();
+            int bytes = 0;
+            if (full || count > DELTA_LIMIT) {
+                packets.add(new ChunkDataS2CPacket(chunk, world.getChunkManager().getLightingProvider(), null, null));
+                if (traffic != null) bytes += Traffic.estimateChunk(chunk);
+            } else {
+                var sections = chunk.getSectionArray();
+                for (int i = 0, length = positions.length; i < length; i++) {
+                    var set = positions[i];
+                    if (set == null || set.isEmpty()) continue;
+                    var sectionPos = ChunkSectionPos.from(cPos, world.sectionIndexToCoord(i));
+                    if (set.size() == 1) {
+                        var pos = sectionPos.unpackBlockPos(set.iterator().nextShort());
+                        packets.add(new BlockUpdateS2CPacket(pos, chunk.getBlockState(pos)));
+                        bytes += Traffic.BLOCK_UPDATE_SIZE;
+                    } else {
+                        packets.add(new ChunkDeltaUpdateS2CPacket(sectionPos, set, sections[i]));
+                        bytes += Traffic.estimateDelta(set.size());
+                    }
+                }
+            }
+
+            for (var player : players) {
+                for (var packet : packets) {
+                    player.networkHandler.sendPacket(packet);
+                }
+            }
+            if (traffic != null) traffic.add(packets.size(), bytes, players.size());
+        }
+    }
+
+    /**
+     * Counts packets sent by an update, only created while {@link EditorMetrics#isEnabled()}.
+     * Sizes are estimated from packet contents instead of encoding packets, uncompressed and without framing.
+     */
+    private static final class Traffic {
+        private static final int BLOCK_UPDATE_SIZE = 1 + 8 + 3;
+        private static final int LIGHT_ARRAY_SIZE = 2 + 2048;
+
+        private int packets = 0;
+        private long bytes = 0;
+
+        private void add(int packets, int bytes, int recipients) {
+            this.packets += packets * recipients;
+            this.bytes += (long) bytes * recipients;
+        }
+
+        private static int estimateDelta(int count) {
+            // Each entry is a varlong of the state id and packed position, usually four bytes
+            return 1 + 8 + 2 + count * 4;
+        }
+
+        private static int estimateChunk(WorldChunk chunk) {
+            int bytes = 1 + 8 + 64;
+            for (var section : chunk.getSectionArray()) {
+                bytes += section.getPacketSize();
+                // Lit sections usually carry both sky and block light arrays
+                if (!section.isEmpty()) bytes += LIGHT_ARRAY_SIZE * 2;
+            }
+            return bytes;
+        }
+
+        private static int estimateLight(BitSet bits) {
+            return 1 + 8 + 32 + bits.cardinality() * LIGHT_ARRAY_SIZE * 2;
+        }
+    }
+
+    private static final class Lighting {
+        /**
+         * Maximum number of block light checks enqueued on the lighting provider per tick.
+         */
+        private static final int CHECK_LIMIT = 16384;
+        /**
+         * Maximum number of ticks to wait for propagation to settle before sending light updates anyway.
+         */
+        private static final int TICK_LIMIT = 20;
+
+        private final ServerWorld world;
+        private final ServerLightingProvider provider;
+
+        private final LongArrayList checks = new LongArrayList();
+        private int checksCursor = 0;
+
+        private final Long2ObjectLinkedOpenHashMap<BitSet> sections = new Long2ObjectLinkedOpenHashMap<>();
+
+        private CompletableFuture<?> barrier = null;
+        private int barrierX;
+        private int barrierZ;
+        private int ticks = 0;
+
+        private Lighting(ServerWorld world) {
+            this.world = world;
+            this.provider = world.getChunkManager().getLightingProvider();
+        }
+
+        private void mark(int x, int z, int index) {
+            int height = provider.getHeight();
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    var bits = sections.computeIfAbsent(ChunkPos.toLong(x + dx, z + dz), (key) -> new BitSet(height));
+                    bits.set(Math.max(0, index - 1), Math.min(height, index + 2));
+                }
+            }
+        }
+
+        private void add(Changes changes) {
+            var chunk = changes.chunk;
+            var cPos = chunk.getPos();
+            var chunkSections = chunk.getSectionArray();
+
+            for (int i = 0, length = changes.positions.length; i < length; i++) {
+                var set = changes.positions[i];
+                if (set == null) continue;
+
+                var sectionY = world.sectionIndexToCoord(i);
+                var sectionPos = ChunkSectionPos.from(cPos, sectionY);
+                provider.setSectionStatus(sectionPos, chunkSections[i].isEmpty());
+
+                int minX = sectionPos.getMinX();
+                int minY = sectionPos.getMinY();
+                int minZ = sectionPos.getMinZ();
+                if (changes.rewritten[i]) {
+                    for (int packed = 0; packed < 4096; packed++) {
+                        checks.add(BlockPos.asLong(minX + (packed >>> 8 & 15), minY + (packed & 15), minZ + (packed >>> 4 & 15)));
+                    }
+                } else {
+                    var iterator = set.iterator();
+                    while (iterator.hasNext()) {
+                        short packed = iterator.nextShort();
+                        checks.add(BlockPos.asLong(minX + (packed >>> 8 & 15), minY + (packed & 15), minZ + (packed >>> 4 & 15)));
+                    }
+                }
+
+                mark(cPos.x, cPos.z, sectionY - provider.getBottomY());
+            }
+
+            barrierX = cPos.x;
+            barrierZ = cPos.z;
+        }
+
+        private void send(int distance, Traffic traffic) {
+            var manager = world.getChunkManager();
+            var players = world.getPlayers();
+            for (var entry : sections.long2ObjectEntrySet()) {
+                var cPos = new ChunkPos(entry.getLongKey());
+                if (!manager.isChunkLoaded(cPos.x, cPos.z)) continue;
+                var bits = entry.getValue();
+                Packet<?> packet = null;
+                int recipients = 0;
+                for (ServerPlayerEntity player : players) {
+                    if (player.getChunkPos().getChebyshevDistance(cPos) > distance) continue;
+                    if (packet == null) packet = new LightUpdateS2CPacket(cPos, provider, bits, bits);
+                    player.networkHandler.sendPacket(packet);
+                    recipients++;
+                }
+                if (packet != null && traffic != null) traffic.add(1, Traffic.estimateLight(bits), recipients);
+            }
+            sections.clear();
+        }
+
+        private boolean update(int distance, Traffic traffic) {
+            if (checksCursor < checks.size()) {
+                int end = Math.min(checks.size(), checksCursor + CHECK_LIMIT);
+                while (checksCursor < end) {
+                    provider.checkBlock(BlockPos.fromLong(checks.getLong(checksCursor++)));
+                }
+                if (checksCursor == checks.size()) {
+                    checks.clear();
+                    checksCursor = 0;
+                    // Completes once the lighting provider has run every check enqueued before it
+                    barrier = provider.enqueue(barrierX, barrierZ);
+                    ticks = 0;
+                }
+                provider.tick();
+            }
+
+            if (!checks.isEmpty()) {
+                return false;
+            }
+            if (barrier != null && !barrier.isDone() && ++ticks < TICK_LIMIT) {
+                return false;
+            }
+
+            send(distance, traffic);
+            barrier = null;
+            return true;
+        }
+    }
+
+    /**
+     * Marker returned by {@link Task#performSection} when a whole section was rewritten in one step.
+     */
+    private static final ShortSet REWRITTEN = new ShortOpenHashSet(0);
+
+    /**
+     * Package-private only so that benchmarks can drive {@link #performSection} directly.
+     */
+    @VisibleForTesting
+    static final class Task {
+        private final Target target;
+        private final Operation[] operations;
+        private final Predicate[] filters;
+        private final Action[] actions;
+        private final Transform[] transforms;
+        private final Journal[] journals;
+        private final boolean transformable;
+        private final boolean journaled;
+
+        private final SearchOperation[] searches;
+        private final ChecksumOperation[] checksums;
+
+        private final boolean readOnly;
+        private final ArrayList<Snapshot> snapshots;
+        private Scan scan;
+        private final ArrayList<ChecksumSection> checksumSections;
+        private Checksum checksum;
+
+        private int chunksRemaining;
+        private boolean failed = false;
+        private boolean released = false;
+
+        private final String source;
+        private int chunksVisited = 0;
+        private int sectionsSkipped = 0;
+        private int sectionsRewritten = 0;
+        private long blocksTested = 0;
+        private long blocksMutated = 0;
+        private long scanNanos = 0;
+        private long mutateNanos = 0;
+        private int ticks = 0;
+
+        private Task(Target target, Operation[] operations, String source) {
+            this.target = target;
+            this.operations = operations;
+            this.source = source;
+
+            int length = operations.length;
+            filters = new Predicate[length];
+            actions = new Action[length];
+            transforms = new Transform[length];
+            journals = new Journal[length];
+            boolean transformable = false;
+            for (int i = 0; i < length; i++) {
+                var operation = operations[i];
+                filters[i] = operation.filter();
+                actions[i] = operation.action();
+                transforms[i] = operation.transform();
+                journals[i] = operation.journal();
+                if (transforms[i] != null) transformable = true;
+            }
+            this.transformable = transformable;
+            this.journaled = Arrays.stream(journals).anyMatch(Objects::nonNull);
+
+            chunksRemaining = (int) target.region.getChunkCount();
+
+            searches = Arrays.stream(operations).filter((operation) -> operation instanceof SearchOperation).toArray(SearchOperation[]::new);
+            checksums = Arrays.stream(operations).filter((operation) -> operation instanceof ChecksumOperation).toArray(ChecksumOperation[]::new);
+            for (var operation : checksums) {
+                operation.checksums = new long[chunksRemaining];
+            }
+
+            readOnly = searches.length + checksums.length == operations.length;
+            snapshots = readOnly && searches.length > 0 ? new ArrayList<>() : null;
+            checksumSections = readOnly && checksums.length > 0 ? new ArrayList<>() : null;
+        }
+
+        private void checksumChunk(WorldChunk chunk, Region region, ServerWorld world) {
+            int posMinY = region.getStart().getY();
+            int posMaxY = region.getEnd().getY();
+
+            int bottomY = world.getBottomY();
+
+            var cPos = chunk.getPos();
+            var cPosMin = region.getChunkStart();
+            int chunkDepth = region.getChunkEnd().z - cPosMin.z + 1;
+            int index = (cPos.x - cPosMin.x) * chunkDepth + (cPos.z - cPosMin.z);
+
+            long checksum = 0;
+
+            var sections = chunk.getSectionArray();
+            for (int i = 0, sectionsCount = sections.length; i < sectionsCount; i++) {
+                int offsetY = (i << 4) + bottomY;
+                if (posMinY > offsetY + 15 || posMaxY < offsetY) continue;
+                if (checksumSections != null) {
+                    // Read-only tasks hash copies of their sections in the background, copying is much cheaper than hashing
+                    checksumSections.add(new ChecksumSection(index, sections[i].getBlockStateContainer().copy()));
+                } else {
+                    checksum = checksumSection(checksum, sections[i].getBlockStateContainer().data);
+                }
+            }
+
+            if (checksumSections != null) return;
+            for (var operation : checksums) {
+                operation.checksums[index] = checksum;
+            }
+        }
+
+        private void snapshotChunk(WorldChunk chunk, Region region, ServerWorld world) {
+            var cPos = chunk.getPos();
+            int offsetX = cPos.x << 4;
+            int offsetZ = cPos.z << 4;
+
+            int posMinY = region.getStart().getY();
+            int posMaxY = region.getEnd().getY();
+
+            int bottomY = world.getBottomY();
+
+            var sections = chunk.getSectionArray();
+            for (int i = 0, sectionsCount = sections.length; i < sectionsCount; i++) {
+                int offsetY = (i << 4) + bottomY;
+                if (posMinY > offsetY + 15 || posMaxY < offsetY) continue;
+                if (!matchesPalette(sections[i])) {
+                    sectionsSkipped++;
+                    continue;
+                }
+                snapshots.add(new Snapshot(offsetX, offsetY, offsetZ, sections[i].getBlockStateContainer().copy()));
+            }
+        }
+
+        private boolean matchesPalette(ChunkSection section) {
+            for (var filter : filters) {
+                if (filter == null || section.hasAny(filter::test)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private @Nullable BlockState transformUniform(BlockState state) {
+            // Applies every operation to a single block state in order, mirroring the per-block loop
+            // Returns null if any operation that would apply depends on position
+            var filters = this.filters;
+            var transforms = this.transforms;
+            for (int i = 0, length = filters.length; i < length; i++) {
+                var filter = filters[i];
+                if (filter != null && !filter.test(state)) continue;
+                var transform = transforms[i];
+                if (transform == null) return null;
+                var stateNew = transform.apply(state);
+                if (stateNew != null) state = stateNew;
+            }
+            return state;
+        }
+
+        private void journalUniform(BlockState state, int offsetX, int offsetY, int offsetZ) {
+            // Records the same steps as transformUniform for every block in the section, for operations with journals
+            var filters = this.filters;
+            var transforms = this.transforms;
+            var journals = this.journals;
+            for (int i = 0, length = filters.length; i < length; i++) {
+                var filter = filters[i];
+                if (filter != null && !filter.test(state)) continue;
+                var stateNew = transforms[i].apply(state);
+                if (stateNew == null) continue;
+                var journal = journals[i];
+                if (journal != null && stateNew != state) {
+                    journal.recordSection(offsetX, offsetY, offsetZ, state, stateNew);
+                }
+                state = stateNew;
+            }
+        }
+
+        private static final int SECTION_UNCHANGED = 0;
+        private static final int SECTION_REWRITTEN = 1;
+        private static final int SECTION_SCAN = 2;
+
+        /**
+         * Tries to apply this task's operations to a single chunk section without visiting every block, either because
+         * no palette entries match or because the section is fully covered and holds a single block state.
+         * @return {@link #SECTION_UNCHANGED}, {@link #SECTION_REWRITTEN}, or {@link #SECTION_SCAN} if every block must be visited.
+         */
+        private int performSectionFast(ChunkSection section, int offsetX, int offsetY, int offsetZ) {
+            if (!matchesPalette(section)) {
+                sectionsSkipped++;
+                return SECTION_UNCHANGED;
+            }
+
+            if (!transformable) return SECTION_SCAN;
+
+            var region = target.region;
+            var posMin = region.getStart();
+            var posMax = region.getEnd();
+            boolean covered =
+                posMin.getX() <= offsetX && posMax.getX() >= offsetX + 15 &&
+                posMin.getY() <= offsetY && posMax.getY() >= offsetY + 15 &&
+                posMin.getZ() <= offsetZ && posMax.getZ() >= offsetZ + 15;
+            if (!covered) return SECTION_SCAN;
+
+            // Fully covered section holding a single block state, rewrite it in one step if possible
+            var stateOld = section.getBlockState(0, 0, 0);
+            if (section.hasAny((state) -> state != stateOld)) return SECTION_SCAN;
+            var stateNew = transformUniform(stateOld);
+            if (stateNew == null) return SECTION_SCAN;
+
+            sectionsRewritten++;
+            blocksTested++;
+            if (stateNew == stateOld) {
+                return SECTION_UNCHANGED;
+            }
+            if (journaled) journalUniform(stateOld, offsetX, offsetY, offsetZ);
+            section.blockStateContainer = new PalettedContainer<>(Block.STATE_IDS, stateNew, PalettedContainer.PaletteProvider.BLOCK_STATE);
+            section.calculateCounts();
+            blocksMutated += 4096;
+            return SECTION_REWRITTEN;
+        }
+
+        /**
+         * Applies this task's operations to a single chunk section, clipped to the task's region.
+         * @return Packed local positions of changed blocks, {@link #REWRITTEN} if the whole section was rewritten, or null if nothing changed.
+         */
+        @VisibleForTesting
+        @Nullable ShortSet performSection(ChunkSection section, int offsetX, int offsetY, int offsetZ) {
+            return performSection(section, new Task[] { this }, 1, offsetX, offsetY, offsetZ);
+        }
+
+        /**
+         * Applies the operations of several tasks to a single chunk section, with the same result as applying each task
+         * in order. Leading tasks that can skip or rewrite the section in one step do so, the remaining tasks share a
+         * single pass over the blocks of the section, applied to each block in task order.
+         * @return Packed local positions of changed blocks, {@link #REWRITTEN} if the whole section was rewritten, or null if nothing changed.
+         */
+        private static @Nullable ShortSet performSection(ChunkSection section, Task[] tasks, int count, int offsetX, int offsetY, int offsetZ) {
+            boolean rewritten = false;
+
+            int first = 0;
+            for (; first < count; first++) {
+                // Once a task needs a per-block pass, later tasks must observe its changes, so they join the pass
+                int result = tasks[first].performSectionFast(section, offsetX, offsetY, offsetZ);
+                if (result == SECTION_SCAN) break;
+                if (result == SECTION_REWRITTEN) rewritten = true;
+            }
+
+            ShortSet positions = null;
+            if (first < count) {
+                positions = performSectionScan(section, tasks, first, count, offsetX, offsetY, offsetZ);
+            }
+
+            return rewritten ? REWRITTEN : positions;
+        }
+
+        private static @Nullable ShortSet performSectionScan(ChunkSection section, Task[] tasks, int first, int count, int offsetX, int offsetY, int offsetZ) {
+            int length = count - first;
+            var bounds = new int[length * 6];
+            var tested = new long[length];
+            var mutated = new int[length];
+
+            // Bounds of each task clipped to the section in local coordinates, and the union of all of them
+            int minX = 16, minY = 16, minZ = 16, maxX = -1, maxY = -1, maxZ = -1;
+            for (int t = 0; t < length; t++) {
+                var region = tasks[first + t].target.region;
+                var posMin = region.getStart();
+                var posMax = region.getEnd();
+                int b = t * 6;
+                bounds[b] = Math.max(0, posMin.getX() - offsetX);
+                bounds[b + 1] = Math.max(0, posMin.getY() - offsetY);
+                bounds[b + 2] = Math.max(0, posMin.getZ() - offsetZ);
+                bounds[b + 3] = Math.min(15, posMax.getX() - offsetX);
+                bounds[b + 4] = Math.min(15, posMax.getY() - offsetY);
+                bounds[b + 5] = Math.min(15, posMax.getZ() - offsetZ);
+                minX = Math.min(minX, bounds[b]);
+                minY = Math.min(minY, bounds[b + 1]);
+                minZ = Math.min(minZ, bounds[b + 2]);
+                maxX = Math.max(maxX, bounds[b + 3]);
+                maxY = Math.max(maxY, bounds[b + 4]);
+                maxZ = Math.max(maxZ, bounds[b + 5]);
+            }
+
+            ShortSet positions = null;
+
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        var stateOld = section.getBlockState(x, y, z);
+                        var stateCurrent = stateOld;
+                        for (int t = 0; t < length; t++) {
+                            int b = t * 6;
+                            if (
+                                x < bounds[b] || y < bounds[b + 1] || z < bounds[b + 2] ||
+                                x > bounds[b + 3] || y > bounds[b + 4] || z > bounds[b + 5]
+                            ) continue;
+                            tested[t]++;
+                            var stateNew = tasks[first + t].performBlock(stateCurrent, x + offsetX, y + offsetY, z + offsetZ);
+                            if (stateNew != stateCurrent) {
+                                stateCurrent = stateNew;
+                                mutated[t]++;
+                            }
+                        }
+                        if (stateCurrent != stateOld) {
+                            section.setBlockState(x, y, z, stateCurrent);
+                            if (positions == null) positions = new ShortOpenHashSet();
+                            positions.add((short) (x << 8 | z << 4 | y));
+                        }
+                    }
+                }
+            }
+
+            for (int t = 0; t < length; t++) {
+                var task = tasks[first + t];
+                task.blocksTested += tested[t];
+                task.blocksMutated += mutated[t];
+            }
+
+            return positions;
+        }
+
+        private BlockState performBlock(BlockState state, int x, int y, int z) {
+            var filters = this.filters;
+            var actions = this.actions;
+            var journals = this.journals;
+            for (int j = 0, actionsCount = actions.length; j < actionsCount; j++) {
+                var filter = filters[j];
+                if (filter != null && !filter.test(state)) continue;
+                var stateNew = actions[j].apply(state, x, y, z);
+                if (stateNew != null && stateNew != state) {
+                    var journal = journals[j];
+                    if (journal != null) journal.record(x, y, z, state, stateNew);
+                    state = stateNew;
+                }
+            }
+            return state;
+        }
+
+        private static void performChunk(WorldChunk chunk, Task[] tasks, Map<WorldChunk, Changes> chunksChanged) {
+            var cPos = chunk.getPos();
+            int offsetX = cPos.x << 4;
+            int offsetZ = cPos.z << 4;
+
+            int bottomY = chunk.getBottomY();
+
+            var sections = chunk.getSectionArray();
+            int sectionsCount = sections.length;
+
+            var active = new Task[tasks.length];
+
+            Changes changes = null;
+
+            for (int i = 0; i < sectionsCount; i++) {
+                int offsetY = (i << 4) + bottomY;
+                int count = 0;
+                for (var task : tasks) {
+                    var region = task.target.region;
+                    if (region.getStart().getY() > offsetY + 15 || region.getEnd().getY() < offsetY) continue;
+                    active[count++] = task;
+                }
+                if (count == 0) continue;
+                var positions = performSection(sections[i], active, count, offsetX, offsetY, offsetZ);
+                if (positions == null) continue;
+                if (changes == null) changes = chunksChanged.computeIfAbsent(chunk, Changes::new);
+                if (positions == REWRITTEN) {
+                    changes.addSection(i);
+                } else {
+                    changes.add(i, positions);
+                }
+            }
+        }
+
+        /**
+         * Visits a chunk for every task that covers it, in order. Consecutive tasks that only edit share each section
+         * pass, read-only tasks and tasks with checksums are visited on their own so they observe earlier edits.
+         */
+        private static void performVisit(WorldChunk chunk, Task[] tasks, Map<WorldChunk, Changes> chunksChanged, int ticks) {
+            int i = 0, length = tasks.length;
+            while (i < length) {
+                var task = tasks[i];
+                if (!task.isEditOnly()) {
+                    task.performVisit(chunk, chunksChanged, ticks);
+                    i++;
+                    continue;
+                }
+                int j = i + 1;
+                while (j < length && tasks[j].isEditOnly()) j++;
+                performEdits(chunk, Arrays.copyOfRange(tasks, i, j), chunksChanged, ticks);
+                i = j;
+            }
+        }
+
+        private boolean isEditOnly() {
+            return !readOnly && checksums.length == 0;
+        }
+
+        private static void performEdits(WorldChunk chunk, Task[] tasks, Map<WorldChunk, Changes> chunksChanged, int ticks) {
+            var live = Arrays.stream(tasks).filter((task) -> !task.failed).toArray(Task[]::new);
+            if (live.length > 0) {
+                for (var task : live) {
+                    task.ticks = ticks;
+                    task.chunksVisited++;
+                }
+                var start = System.nanoTime();
+                try {
+                    performChunk(chunk, live, chunksChanged);
+                } catch (Throwable cause) {
+                    // The failing task cannot be told apart within a shared pass, so every task in it fails
+                    for (var task : live) {
+                        task.performFailed(cause);
+                        task.failed = true;
+                    }
+                }
+                // Time spent in a shared pass is split evenly between its tasks
+                var elapsed = (System.nanoTime() - start) / live.length;
+                for (var task : live) {
+                    task.mutateNanos += elapsed;
+                }
+            }
+            for (var task : tasks) {
+                task.performVisited();
+            }
+        }
+
+        private void performVisit(WorldChunk chunk, Map<WorldChunk, Changes> chunksChanged, int ticks) {
+            if (failed) return;
+
+            this.ticks = ticks;
+
+            try {
+                chunksVisited++;
+                var start = System.nanoTime();
+                if (checksums.length > 0) {
+                    checksumChunk(chunk, target.region, target.world);
+                }
+                if (readOnly) {
+                    if (snapshots != null) snapshotChunk(chunk, target.region, target.world);
+                    scanNanos += System.nanoTime() - start;
+                } else {
+                    var middle = System.nanoTime();
+                    scanNanos += middle - start;
+                    performChunk(chunk, new Task[] { this }, chunksChanged);
+                    mutateNanos += System.nanoTime() - middle;
+                }
+            } catch (Throwable cause) {
+                performFailed(cause);
+                failed = true;
+            }
+
+            performVisited();
+        }
+
+        private void performVisited() {
+            if (failed) {
+                // Failed tasks are released and recorded once, skipped when visiting the remaining chunks
+                if (!released) {
+                    released = true;
+                    performRelease();
+                    performRecord();
+                }
+            } else if (--chunksRemaining == 0) {
+                performFinished();
+            }
+        }
+
+        private void performVisitFailed(Throwable cause, int ticks) {
+            if (failed) return;
+
+            this.ticks = ticks;
+
+            performFailed(cause);
+            failed = true;
+
+            performVisited();
+        }
+
+        private void performFinished() {
+            try {
+                if (readOnly) {
+                    if (checksumSections != null) {
+                        checksum = new Checksum(checksums[0].checksums.length, checksumSections);
+                        POOL.execute(checksum);
+                    }
+                    if (snapshots != null) {
+                        var predicates = new Predicate[searches.length];
+                        for (int i = 0, length = searches.length; i < length; i++) {
+                            predicates[i] = searches[i].predicate;
+                        }
+                        // Chunks shared with other tasks may have been visited out of order, restore region order for the results
+                        snapshots.sort(Comparator.comparingInt(Snapshot::offsetX).thenComparingInt(Snapshot::offsetZ));
+                        scan = new Scan(target.region, predicates, snapshots);
+                        POOL.execute(scan);
+                    }
+                    if (scan != null || checksum != null) {
+                        TASKS_SCANNING.add(this);
+                    }
+                } else {
+                    for (Operation operation : operations) {
+                        operation.complete();
+                    }
+                }
+            } catch (Throwable cause) {
+                performFailed(cause);
+                failed = true;
+            }
+            performRelease();
+            // Read-only tasks are recorded once their background scan and checksums have completed
+            if ((scan == null && checksum == null) || failed) performRecord();
+        }
+
+        private void performRelease() {
+            for (var journal : journals) {
+                if (journal != null) journal.release();
+            }
+        }
+
+        private void performFailed(Throwable cause) {
+            for (Operation operation : operations) {
+                try {
+                    operation.completeExceptionally(cause);
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+
+        private boolean performScanned() {
+            if ((scan != null && !scan.isDone()) || (checksum != null && !checksum.isDone())) {
+                return false;
+            }
+            try {
+                if (checksum != null) {
+                    var results = checksum.join();
+                    for (var operation : checksums) {
+                        System.arraycopy(results, 0, operation.checksums, 0, results.length);
+                        operation.complete();
+                    }
+                }
+                if (scan != null) {
+                    var results = scan.join();
+                    for (int i = 0, length = searches.length; i < length; i++) {
+                        var operation = searches[i];
+                        operation.results.addAll(results[i]);
+                        operation.complete();
+                    }
+                }
+            } catch (Throwable cause) {
+                performFailed(cause);
+                failed = true;
+            }
+            if (checksum != null) {
+                scanNanos += checksum.elapsed;
+            }
+            if (scan != null) {
+                scanNanos += scan.elapsed;
+                blocksTested += scan.tested;
+            }
+            performRecord();
+            return true;
+        }
+
+        private void performRecord() {
+            if (EditorMetrics.isEnabled()) {
+                EditorMetrics.record(new EditorMetrics.TaskSample(
+                    System.currentTimeMillis(), source, !failed, operations.length, ticks,
+                    chunksVisited, sectionsSkipped, sectionsRewritten, blocksTested, blocksMutated,
+                    scanNanos, mutateNanos
+                ));
+            }
+
+            var ms = (double) (scanNanos + mutateNanos) * 1e-6D;
+            var message = new StringBuilder(64);
+            message.append("Editor performed task (");
+            message.append(failed ? "failure" : "success");
+            message.append(") from ");
+            message.append(source);
+            message.append(" for ");
+            message.append(operations.length);
+            message.append(" operation(s) in ");
+            message.append(new DecimalFormat("#.##").format(ms));
+            message.append("ms over ");
+            message.append(ticks);
+            message.append(" tick(s)");
+            if (failed) {
+                Game.LOGGER.warn(message);
+            } else {
+                if (ms >= 2.0) Game.LOGGER.info(message);
+                else Game.LOGGER.debug(message);
+            }
+        }
+    }
+
+    private record Visit(ServerWorld world, int x, int z, Task[] tasks) {
+    }
+
+    private static final class Plan {
+        private final ArrayList<Visit> visits = new ArrayList<>();
+        private int visitsCursor = 0;
+        private int ticks = 0;
+
+        private Plan(List<Task> tasks) {
+            // Smaller tasks claim their chunks first so they finish early, and within a chunk tasks are applied
+            // smallest first, falling back to the order they were queued, matching the order of the single-tick editor
+            var order = new ArrayList<>(tasks);
+            order.sort(Comparator.comparingLong((task) -> task.target.region.getBlockCount()));
+
+            var chunks = new LinkedHashMap<ServerWorld, Long2ObjectLinkedOpenHashMap<ArrayList<Task>>>();
+            for (var task : order) {
+                var region = task.target.region;
+                var chunksWorld = chunks.computeIfAbsent(task.target.world, (world) -> new Long2ObjectLinkedOpenHashMap<>());
+                var cPosMin = region.getChunkStart();
+                var cPosMax = region.getChunkEnd();
+                for (int x = cPosMin.x; x <= cPosMax.x; x++) {
+                    for (int z = cPosMin.z; z <= cPosMax.z; z++) {
+                        chunksWorld.computeIfAbsent(ChunkPos.toLong(x, z), (key) -> new ArrayList<>(2)).add(task);
+                    }
+                }
+            }
+
+            var indices = new IdentityHashMap<Task, Integer>();
+            for (int i = 0, size = order.size(); i < size; i++) {
+                indices.put(order.get(i), i);
+            }
+
+            for (var entryWorld : chunks.entrySet()) {
+                var world = entryWorld.getKey();
+                for (var entry : entryWorld.getValue().long2ObjectEntrySet()) {
+                    var list = entry.getValue();
+                    list.sort(Comparator.comparingInt(indices::get));
+                    long key = entry.getLongKey();
+                    visits.add(new Visit(world, ChunkPos.getPackedX(key), ChunkPos.getPackedZ(key), list.toArray(new Task[0])));
+                }
+            }
+        }
+
+        private boolean perform(long deadline, Map<WorldChunk, Changes> chunksChanged) {
+            ticks++;
+
+            // Always visit at least one chunk, so that every plan makes progress even when the budget is exhausted
+            do {
+                var visit = visits.get(visitsCursor++);
+                WorldChunk chunk;
+                try {
+                    chunk = (WorldChunk) visit.world().getChunkManager().getChunk(visit.x(), visit.z(), ChunkStatus.FULL, true);
+                } catch (Throwable cause) {
+                    // Tasks that cannot visit every chunk in their region fail, rather than silently dropping edits
+                    Game.LOGGER.error("Editor failed to load chunk " + visit.x() + ", " + visit.z(), cause);
+                    for (var task : visit.tasks()) {
+                        task.performVisitFailed(cause, ticks);
+                    }
+                    continue;
+                }
+                if (chunk != null) {
+                    Task.performVisit(chunk, visit.tasks(), chunksChanged, ticks);
+                } else {
+                    for (var task : visit.tasks()) {
+                        if (!task.failed) task.performVisited();
+                    }
+                }
+            } while (visitsCursor < visits.size() && System.nanoTime() < deadline);
+
+            return visitsCursor >= visits.size();
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static final LinkedHashMap<Target, Queue> QUEUES = new LinkedHashMap<>();
+
+    private static final ArrayList<Plan> PLANS = new ArrayList<>();
+    private static final ArrayList<Task> TASKS_SCANNING = new ArrayList<>();
+
+    private static final ArrayList<Restore> RESTORES = new ArrayList<>();
+    private static final ArrayList<Restore> RESTORES_ACTIVE = new ArrayList<>();
+
+    private static final LinkedHashMap<ServerWorld, Lighting> LIGHTING = new LinkedHashMap<>();
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        (pool) -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("MnSnD-Editor-Worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        },
+        null, false
+    );
+
+    /**
+     * Creates a queue of operations for the given world and region.
+     * Note that queues should be used immediately and discarded, as they become invalid after the next tick.
+     * @param world World to perform operations in.
+     * @param region Region to perform operations in.
+     * @return Operation queue instance.
+     * @throws NullPointerException If either of the provided arguments are null.
+     */
+    public static @NotNull Queue queue(@NotNull ServerWorld world, @NotNull Region region) {
+        Objects.requireNonNull(world, "Argument 'world'");
+        Objects.requireNonNull(region, "Argument 'region'");
+        synchronized (LOCK) {
+            return QUEUES.computeIfAbsent(new Target(world, region), (key) -> new Queue(world, source()));
+        }
+    }
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static String source() {
+        if (!EditorMetrics.isEnabled()) return "unknown";
+        // Names the first caller outside of the editor, so that metrics can be attributed to services and commands
+        return WALKER.walk((frames) -> frames
+            .filter((frame) -> !frame.getClassName().startsWith(Editor.class.getName()))
+            .findFirst()
+            .map((frame) -> {
+                var className = frame.getClassName();
+                return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+            })
+            .orElse("unknown"));
+    }
+
+    /**
+     * Creates an empty journal for recording block changes in the given world.
+     * @param world World that recorded changes are made in.
+     * @return New journal instance.
+     * @throws NullPointerException If {@code world} is null.
+     */
+    public static @NotNull Journal journal(@NotNull ServerWorld world) {
+        Objects.requireNonNull(world, "Argument 'world'");
+        return new Journal(world);
+    }
+
+    /**
+     * Creates a queue of operations for the given world and region, calling the provided function with the new operation queue.
+     * The provided function will be executed while synchronized on the global editor lock, ensuring that the queue instance remains valid and no other operations are enqueued concurrently.
+     * @param world World to perform operations in.
+     * @param region Region to perform operations in.
+     * @param function Function called with the new operation queue.
+     * @return Return value of the provided function.
+     * @throws NullPointerException If either of the provided arguments are null.
+     */
+    public static <T> T queue(@NotNull ServerWorld world, @NotNull Region region, @NotNull Function<@NotNull Queue, T> function) {
+        Objects.requireNonNull(world, "Argument 'world'");
+        Objects.requireNonNull(region, "Argument 'region'");
+        Objects.requireNonNull(function, "Argument 'function'");
+        synchronized (LOCK) {
+            return function.apply(queue(world, region));
+        }
+    }
+
+    /**
+     * Executes enqueued operations, must be run on the main server thread once per tick.
+     * Work is limited by the {@link Game#RULE_EDITOR_BUDGET_DURATION} budget, tasks that do not finish within the budget
+     * are resumed from their last visited chunk on the next tick.
+     * @throws IllegalStateException If invoked from the wrong thread.
+     */
+    public static void update() {
+        var server = Game.getGame().getServer();
+
+        if (!server.isOnThread()) {
+            throw new IllegalStateException("Editor execution started from wrong thread");
+        }
+
+        synchronized (LOCK) {
+            if (!QUEUES.isEmpty()) {
+                var tasks = new ArrayList<Task>(QUEUES.size());
+                for (var entry : QUEUES.entrySet()) {
+                    var target = entry.getKey();
+                    var queue = entry.getValue();
+                    tasks.add(new Task(target, queue.consume(), queue.source));
+                }
+                QUEUES.clear();
+                PLANS.add(new Plan(tasks));
+            }
+            if (!RESTORES.isEmpty()) {
+                RESTORES_ACTIVE.addAll(RESTORES);
+                RESTORES.clear();
+            }
+        }
+
+        if (!TASKS_SCANNING.isEmpty()) {
+            TASKS_SCANNING.removeIf(Task::performScanned);
+        }
+
+        var distance = server.getPlayerManager().getViewDistance() + 4;
+
+        if (PLANS.isEmpty() && RESTORES_ACTIVE.isEmpty() && LIGHTING.isEmpty()) return;
+
+        var traffic = EditorMetrics.isEnabled() ? new Traffic() : null;
+
+        long performNanos = 0;
+        long broadcastNanos = 0;
+        long lightingNanos = 0;
+
+        if (!PLANS.isEmpty() || !RESTORES_ACTIVE.isEmpty()) {
+            var start = System.nanoTime();
+            var deadline = start + (long) (Game.getGame().getRuleDouble(Game.RULE_EDITOR_BUDGET_DURATION) * 1e+6D);
+
+            var chunks = new LinkedHashMap<WorldChunk, Changes>();
+
+            var iterator = PLANS.iterator();
+            while (iterator.hasNext()) {
+                var plan = iterator.next();
+                if (plan.perform(deadline, chunks)) {
+                    iterator.remove();
+                }
+                if (System.nanoTime() >= deadline) break;
+            }
+
+            // Restores run after plans, so that they see every change recorded by tasks that finished this tick
+            RESTORES_ACTIVE.removeIf((restore) -> restore.perform(deadline, chunks));
+
+            var middle = System.nanoTime();
+            performNanos = middle - start;
+
+            for (var changes : chunks.values()) {
+                changes.send(distance, traffic);
+            }
+
+            var end = System.nanoTime();
+            broadcastNanos = end - middle;
+
+            for (var changes : chunks.values()) {
+                LIGHTING.computeIfAbsent((ServerWorld) changes.chunk.getWorld(), Lighting::new).add(changes);
+            }
+
+            lightingNanos = System.nanoTime() - end;
+        }
+
+        if (!LIGHTING.isEmpty()) {
+            var start = System.nanoTime();
+            LIGHTING.values().removeIf((lighting) -> lighting.update(distance, traffic));
+            lightingNanos += System.nanoTime() - start;
+        }
+
+        if (traffic != null) {
+            EditorMetrics.record(new EditorMetrics.UpdateSample(
+                System.currentTimeMillis(), performNanos, broadcastNanos, lightingNanos, traffic.packets, traffic.bytes
+            ));
         }
     }
 
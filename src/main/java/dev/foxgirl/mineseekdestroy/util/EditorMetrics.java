@@ -0,0 +1,256 @@
+package dev.foxgirl.mineseekdestroy.util;
+
+import com.google.gson.GsonBuilder;
+import dev.foxgirl.mineseekdestroy.Game;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Rolling metrics for tasks performed and updates run by the {@link Editor}.
+ * Metrics are only collected while enabled, since attributing tasks to their callers walks the stack.
+ */
+public final class EditorMetrics {
+
+    private EditorMetrics() {
+    }
+
+    private static volatile boolean enabled = false;
+
+    /**
+     * Returns whether metrics are currently being collected.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts collecting metrics, does nothing if already enabled.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops collecting metrics, keeping samples recorded so far.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Sample of a single task, recorded once the task has completed.
+     * @param timestamp Wall clock time in milliseconds when the task completed.
+     * @param source Caller that created the queue for this task.
+     * @param success Whether the task completed without failing.
+     * @param operations Number of operations in the task.
+     * @param ticks Number of ticks the task was performed over.
+     * @param chunksVisited Number of chunks visited.
+     * @param sectionsSkipped Number of chunk sections skipped because no palette entries matched.
+     * @param sectionsRewritten Number of chunk sections rewritten in one step.
+     * @param blocksTested Number of blocks tested by actions or search predicates.
+     * @param blocksMutated Number of blocks changed.
+     * @param scanNanos Time spent checksumming, snapshotting and searching, including worker threads.
+     * @param mutateNanos Time spent applying actions on the server thread.
+     */
+    public record TaskSample(
+        long timestamp, @NotNull String source, boolean success, int operations, int ticks,
+        int chunksVisited, int sectionsSkipped, int sectionsRewritten, long blocksTested, long blocksMutated,
+        long scanNanos, long mutateNanos
+    ) {
+        public long totalNanos() {
+            return scanNanos + mutateNanos;
+        }
+    }
+
+    /**
+     * Sample of a single {@link Editor#update()} run that did any work.
+     * @param timestamp Wall clock time in milliseconds when the update ran.
+     * @param performNanos Time spent performing tasks and restores.
+     * @param broadcastNanos Time spent building and sending block update packets.
+     * @param lightingNanos Time spent enqueuing light checks and sending light update packets.
+     * @param packets Number of packets sent, counting every recipient.
+     * @param bytes Estimated number of bytes sent, counting every recipient.
+     */
+    public record UpdateSample(
+        long timestamp, long performNanos, long broadcastNanos, long lightingNanos, int packets, long bytes
+    ) {
+        public long totalNanos() {
+            return performNanos + broadcastNanos + lightingNanos;
+        }
+    }
+
+    private static final int TASK_SAMPLES = 512;
+    private static final int UPDATE_SAMPLES = 1200;
+
+    private static final ArrayDeque<TaskSample> TASKS = new ArrayDeque<>(TASK_SAMPLES);
+    private static final ArrayDeque<UpdateSample> UPDATES = new ArrayDeque<>(UPDATE_SAMPLES);
+
+    static void record(@NotNull TaskSample sample) {
+        synchronized (TASKS) {
+            if (TASKS.size() >= TASK_SAMPLES) TASKS.removeFirst();
+            TASKS.addLast(sample);
+        }
+    }
+
+    static void record(@NotNull UpdateSample sample) {
+        synchronized (UPDATES) {
+            if (UPDATES.size() >= UPDATE_SAMPLES) UPDATES.removeFirst();
+            UPDATES.addLast(sample);
+        }
+    }
+
+    private static List<TaskSample> tasks() {
+        synchronized (TASKS) {
+            return new ArrayList<>(TASKS);
+        }
+    }
+
+    private static List<UpdateSample> updates() {
+        synchronized (UPDATES) {
+            return new ArrayList<>(UPDATES);
+        }
+    }
+
+    /**
+     * Discards all recorded samples.
+     */
+    public static void reset() {
+        synchronized (TASKS) {
+            TASKS.clear();
+        }
+        synchronized (UPDATES) {
+            UPDATES.clear();
+        }
+    }
+
+    private record Histogram(long p50, long p90, long p99, long max) {
+        private static <T> Histogram of(List<T> samples, ToLongFunction<T> function) {
+            var values = new long[samples.size()];
+            for (int i = 0, size = values.length; i < size; i++) {
+                values[i] = function.applyAsLong(samples.get(i));
+            }
+            Arrays.sort(values);
+            return new Histogram(percentile(values, 0.50), percentile(values, 0.90), percentile(values, 0.99), percentile(values, 1.0));
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private String formatCount() {
+            return "p50 " + p50 + ", p90 " + p90 + ", p99 " + p99 + ", max " + max;
+        }
+
+        private String formatNanos() {
+            var format = new DecimalFormat("#.##");
+            return
+                "p50 " + format.format(p50 * 1e-6D) + "ms, p90 " + format.format(p90 * 1e-6D) +
+                "ms, p99 " + format.format(p99 * 1e-6D) + "ms, max " + format.format(max * 1e-6D) + "ms";
+        }
+    }
+
+    private record Source(String source, int count, long totalNanos, long maxNanos) {
+    }
+
+    private static List<Source> sources(List<TaskSample> tasks) {
+        var sources = new HashMap<String, Source>();
+        for (var task : tasks) {
+            sources.merge(
+                task.source(),
+                new Source(task.source(), 1, task.totalNanos(), task.totalNanos()),
+                (a, b) -> new Source(a.source(), a.count() + b.count(), a.totalNanos() + b.totalNanos(), Math.max(a.maxNanos(), b.maxNanos()))
+            );
+        }
+        var list = new ArrayList<>(sources.values());
+        list.sort(Comparator.comparingLong(Source::totalNanos).reversed());
+        return list;
+    }
+
+    /**
+     * Describes the recorded samples as human-readable lines, including percentiles and the most expensive sources.
+     * @return List of lines.
+     */
+    public static @NotNull List<@NotNull String> describe() {
+        var tasks = tasks();
+        var updates = updates();
+
+        var lines = new ArrayList<String>();
+
+        if (!enabled) lines.add("Editor metrics are disabled, enable them with /msd debug editor enable");
+        lines.add("Editor tasks (" + tasks.size() + " sample(s)):");
+        lines.add("  - total: " + Histogram.of(tasks, TaskSample::totalNanos).formatNanos());
+        lines.add("  - scan: " + Histogram.of(tasks, TaskSample::scanNanos).formatNanos());
+        lines.add("  - mutate: " + Histogram.of(tasks, TaskSample::mutateNanos).formatNanos());
+        lines.add("  - ticks: " + Histogram.of(tasks, TaskSample::ticks).formatCount());
+        lines.add("  - chunks visited: " + Histogram.of(tasks, TaskSample::chunksVisited).formatCount());
+        lines.add("  - sections skipped: " + Histogram.of(tasks, TaskSample::sectionsSkipped).formatCount());
+        lines.add("  - blocks tested: " + Histogram.of(tasks, TaskSample::blocksTested).formatCount());
+        lines.add("  - blocks mutated: " + Histogram.of(tasks, TaskSample::blocksMutated).formatCount());
+
+        lines.add("Editor updates (" + updates.size() + " sample(s)):");
+        lines.add("  - total: " + Histogram.of(updates, UpdateSample::totalNanos).formatNanos());
+        lines.add("  - perform: " + Histogram.of(updates, UpdateSample::performNanos).formatNanos());
+        lines.add("  - broadcast: " + Histogram.of(updates, UpdateSample::broadcastNanos).formatNanos());
+        lines.add("  - lighting: " + Histogram.of(updates, UpdateSample::lightingNanos).formatNanos());
+        lines.add("  - packets: " + Histogram.of(updates, UpdateSample::packets).formatCount());
+        lines.add("  - bytes: " + Histogram.of(updates, UpdateSample::bytes).formatCount());
+
+        var sources = sources(tasks);
+        var format = new DecimalFormat("#.##");
+        lines.add("Editor sources by total time:");
+        for (var source : sources.subList(0, Math.min(5, sources.size()))) {
+            lines.add(
+                "  - " + source.source() + ": " + source.count() + " task(s), " +
+                format.format(source.totalNanos() * 1e-6D) + "ms total, " +
+                format.format(source.maxNanos() * 1e-6D) + "ms max"
+            );
+        }
+
+        return lines;
+    }
+
+    /**
+     * Writes all recorded samples and their percentiles as JSON to a file in {@link Game#CONFIGDIR}.
+     * @return Path of the written file.
+     * @throws IOException If writing the file fails.
+     */
+    public static @NotNull Path dump() throws IOException {
+        var tasks = tasks();
+        var updates = updates();
+
+        var histograms = new LinkedHashMap<String, Histogram>();
+        histograms.put("taskTotalNanos", Histogram.of(tasks, TaskSample::totalNanos));
+        histograms.put("taskScanNanos", Histogram.of(tasks, TaskSample::scanNanos));
+        histograms.put("taskMutateNanos", Histogram.of(tasks, TaskSample::mutateNanos));
+        histograms.put("taskTicks", Histogram.of(tasks, TaskSample::ticks));
+        histograms.put("taskChunksVisited", Histogram.of(tasks, TaskSample::chunksVisited));
+        histograms.put("taskSectionsSkipped", Histogram.of(tasks, TaskSample::sectionsSkipped));
+        histograms.put("taskBlocksTested", Histogram.of(tasks, TaskSample::blocksTested));
+        histograms.put("taskBlocksMutated", Histogram.of(tasks, TaskSample::blocksMutated));
+        histograms.put("updateTotalNanos", Histogram.of(updates, UpdateSample::totalNanos));
+        histograms.put("updatePerformNanos", Histogram.of(updates, UpdateSample::performNanos));
+        histograms.put("updateBroadcastNanos", Histogram.of(updates, UpdateSample::broadcastNanos));
+        histograms.put("updateLightingNanos", Histogram.of(updates, UpdateSample::lightingNanos));
+        histograms.put("updatePackets", Histogram.of(updates, UpdateSample::packets));
+        histograms.put("updateBytes", Histogram.of(updates, UpdateSample::bytes));
+
+        var root = new LinkedHashMap<String, Object>();
+        root.put("histograms", histograms);
+        root.put("sources", sources(tasks));
+        root.put("tasks", tasks);
+        root.put("updates", updates);
+
+        var path = Game.CONFIGDIR.resolve("mnsnd-editor-metrics.json");
+        Files.writeString(path, new GsonBuilder().setPrettyPrinting().create().toJson(root));
+        return path;
+    }
+
+}
@@ -0,0 +1,384 @@
+package dev.foxgirl.mineseekdestroy.util;
+
+import dev.foxgirl.mineseekdestroy.Game;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ordered pipeline of filters applied to packets sent to players, keyed by the exact class of the packet.
+ * Packets of classes without any registered filters skip the pipeline after a single table lookup.
+ * Bundles are never filtered themselves, but the packets inside them are, since vanilla sends entity spawn data in bundles.
+ */
+public final class PacketFilters {
+
+    private PacketFilters() {
+    }
+
+    /**
+     * Filter that may replace a packet sent to a player.
+     * @param <P> Class of packet being filtered.
+     */
+    @FunctionalInterface
+    public interface Filter<P extends Packet<?>> {
+        /**
+         * Filters a packet being sent to a player.
+         * @param packet Packet being sent.
+         * @param playerEntity Player the packet is being sent to.
+         * @return Replacement packet, or null to send the packet unchanged.
+         */
+        @Nullable Packet<?> filter(@NotNull P packet, @NotNull ServerPlayerEntity playerEntity);
+    }
+
+    /**
+     * Registered filter along with its timing counters.
+     */
+    public static final class Registration {
+        private final String name;
+        private final Class<?> packetClass;
+        private final Filter<Packet<?>> filter;
+        private final int order;
+        private final long sequence;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rewrites = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Registration(String name, Class<?> packetClass, Filter<Packet<?>> filter, int order, long sequence) {
+            this.name = name;
+            this.packetClass = packetClass;
+            this.filter = filter;
+            this.order = order;
+            this.sequence = sequence;
+        }
+
+        public @NotNull String getName() {
+            return name;
+        }
+
+        public @NotNull Class<?> getPacketClass() {
+            return packetClass;
+        }
+
+        /**
+         * Removes this filter from the pipeline, does nothing if it was already removed.
+         */
+        public void unregister() {
+            PacketFilters.unregister(this);
+        }
+    }
+
+    private static final Comparator<Registration> ORDER =
+        Comparator.<Registration>comparingInt(registration -> registration.order).thenComparingLong(registration -> registration.sequence);
+
+    private static final Object lock = new Object();
+    private static long sequence = 0;
+
+    // Copy-on-write table, only replaced while holding the lock and read without locking
+    private static volatile Reference2ObjectOpenHashMap<Class<?>, Registration[]> table = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * Registers a filter for packets of exactly the given class, subclasses are not matched.
+     * Filters are applied in ascending order, and in order of registration if their order is equal.
+     * @param name Name of the filter, used when describing timing counters.
+     * @param packetClass Class of packets to filter.
+     * @param order Order of the filter in the pipeline.
+     * @param filter Filter to apply.
+     * @return Registration that can be used to remove the filter.
+     */
+    @SuppressWarnings("unchecked")
+    public static <P extends Packet<?>> @NotNull Registration register(@NotNull String name, @NotNull Class<P> packetClass, int order, @NotNull Filter<? super P> filter) {
+        Objects.requireNonNull(name, "Argument 'name'");
+        Objects.requireNonNull(packetClass, "Argument 'packetClass'");
+        Objects.requireNonNull(filter, "Argument 'filter'");
+
+        synchronized (lock) {
+            var registration = new Registration(name, packetClass, (Filter<Packet<?>>) (Filter<?>) filter, order, sequence++);
+
+            var table = new Reference2ObjectOpenHashMap<>(PacketFilters.table);
+            var registrationsOld = table.get(packetClass);
+            Registration[] registrationsNew;
+            if (registrationsOld == null) {
+                registrationsNew = new Registration[] { registration };
+            } else {
+                registrationsNew = Arrays.copyOf(registrationsOld, registrationsOld.length + 1);
+                registrationsNew[registrationsOld.length] = registration;
+                Arrays.sort(registrationsNew, ORDER);
+            }
+            table.put(packetClass, registrationsNew);
+
+            PacketFilters.table = table;
+            return registration;
+        }
+    }
+
+    /**
+     * Registers a filter for packets of exactly the given class, ordered after all existing filters.
+     * @see #register(String, Class, int, Filter)
+     */
+    public static <P extends Packet<?>> @NotNull Registration register(@NotNull String name, @NotNull Class<P> packetClass, @NotNull Filter<? super P> filter) {
+        return register(name, packetClass, 0, filter);
+    }
+
+    private static void unregister(Registration registration) {
+        synchronized (lock) {
+            var registrationsOld = table.get(registration.packetClass);
+            if (registrationsOld == null) return;
+
+            var registrationsNew = Arrays.stream(registrationsOld).filter(other -> other != registration).toArray(Registration[]::new);
+            if (registrationsNew.length == registrationsOld.length) return;
+
+            var table = new Reference2ObjectOpenHashMap<>(PacketFilters.table);
+            if (registrationsNew.length == 0) {
+                table.remove(registration.packetClass);
+            } else {
+                table.put(registration.packetClass, registrationsNew);
+            }
+
+            PacketFilters.table = table;
+        }
+    }
+
+    /**
+     * Checks if any filters are registered for exactly the given class of packet.
+     * @param packetClass Class of packet to check.
+     * @return True if packets of this class are filtered.
+     */
+    public static boolean isFiltered(@NotNull Class<?> packetClass) {
+        return table.containsKey(packetClass);
+    }
+
+    /**
+     * Applies all filters registered for the class of the packet.
+     * Stops early if a filter replaces the packet with one of a different class.
+     * Filters that throw are logged and skipped.
+     * Bundles are rebuilt with their packets filtered, if any of them were replaced.
+     * @param packet Packet being sent.
+     * @param playerEntity Player the packet is being sent to.
+     * @return Packet to send instead, which may be the original packet.
+     */
+    public static @NotNull Packet<?> apply(@NotNull Packet<?> packet, @NotNull ServerPlayerEntity playerEntity) {
+        var registrations = table.get(packet.getClass());
+        if (registrations == null) {
+            return packet instanceof BundleS2CPacket bundle ? applyBundle(bundle, playerEntity) : packet;
+        }
+
+        for (var registration : registrations) {
+            long start = System.nanoTime();
+            Packet<?> replacement;
+            try {
+                replacement = registration.filter.filter(packet, playerEntity);
+            } catch (Throwable cause) {
+                Game.LOGGER.error("Packet filter " + registration.name + " failed", cause);
+                replacement = null;
+            }
+            registration.nanos.add(System.nanoTime() - start);
+            registration.calls.increment();
+
+            if (replacement != null && replacement != packet) {
+                registration.rewrites.increment();
+                if (replacement.getClass() != packet.getClass()) return replacement;
+                packet = replacement;
+            }
+        }
+
+        return packet;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Packet<?> applyBundle(BundleS2CPacket bundle, ServerPlayerEntity playerEntity) {
+        var table = PacketFilters.table;
+
+        boolean filtered = false;
+        for (var packet : bundle.getPackets()) {
+            if (table.containsKey(packet.getClass())) {
+                filtered = true;
+                break;
+            }
+        }
+        if (!filtered) return bundle;
+
+        boolean replaced = false;
+        var packets = new ArrayList<Packet<ClientPlayPacketListener>>();
+        for (var packet : bundle.getPackets()) {
+            var replacement = apply(packet, playerEntity);
+            if (replacement != packet) replaced = true;
+            packets.add((Packet<ClientPlayPacketListener>) replacement);
+        }
+        return replaced ? new BundleS2CPacket(packets) : bundle;
+    }
+
+    /**
+     * Installs or removes the {@link Handler} of every connected player, following {@link Rules#getPacketFiltersOffThread()}.
+     * Must be called once per tick, handlers are only touched when the rule differs from the state of a connection.
+     */
+    public static void update() {
+        boolean offThread = Rules.getPacketFiltersOffThread();
+        for (var playerEntity : Game.getGame().getServer().getPlayerManager().getPlayerList()) {
+            var networkHandler = playerEntity.networkHandler;
+            var channel = networkHandler.connection.channel;
+            if (channel == null) continue;
+            var handler = channel.attr(HANDLER_KEY).get();
+            if (offThread) {
+                if (handler == null) install(channel, networkHandler);
+            } else {
+                if (handler != null) uninstall(channel, handler);
+            }
+        }
+    }
+
+    private static final String HANDLER_NAME = "mineseekdestroy:packet_filters";
+    private static final AttributeKey<Handler> HANDLER_KEY = AttributeKey.valueOf(HANDLER_NAME);
+
+    /**
+     * Outbound channel handler that applies filters on the event loop of the channel, just before packets are encoded.
+     * Filters applied here must only read state that is safe to access from other threads.
+     * <p>
+     * Outbound messages travel from the tail of the pipeline to the head, through the unbundler, the encoder and then
+     * the prepender. The handler must sit between the unbundler and the encoder, since it only sees
+     * {@link io.netty.buffer.ByteBuf}s if it is placed before the encoder.
+     */
+    private static final class Handler extends ChannelOutboundHandlerAdapter {
+        private final ServerPlayNetworkHandler networkHandler;
+
+        // Set on the event loop once the handler is installed tail-side of the encoder, packets sent while it is set
+        // are left to the handler instead of being filtered inline
+        private volatile boolean active = false;
+
+        private Handler(ServerPlayNetworkHandler networkHandler) {
+            this.networkHandler = networkHandler;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof Packet<?> packet) {
+                msg = apply(packet, networkHandler.getPlayer());
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+
+    // Mode switches run on the event loop of the channel, which also performs every write queued from other threads
+    // in order. Packets are therefore filtered twice at worst while a switch is in flight, and never skipped.
+
+    private static void install(Channel channel, ServerPlayNetworkHandler networkHandler) {
+        var handler = new Handler(networkHandler);
+        channel.attr(HANDLER_KEY).set(handler);
+        channel.eventLoop().execute(() -> {
+            var pipeline = channel.pipeline();
+            try {
+                pipeline.addAfter("encoder", HANDLER_NAME, handler);
+            } catch (IllegalArgumentException | NoSuchElementException cause) {
+                Game.LOGGER.warn("Failed to install packet filter handler, filtering on the server thread instead", cause);
+                return;
+            }
+            // Names are listed from head to tail, so the handler must come after the encoder
+            var names = pipeline.names();
+            int indexEncoder = names.indexOf("encoder");
+            int indexHandler = names.indexOf(HANDLER_NAME);
+            if (indexEncoder >= 0 && indexHandler > indexEncoder) {
+                // Writes queued before this point were filtered inline, writes queued after it reach the handler
+                handler.active = true;
+            } else {
+                // A misplaced handler only ever sees encoded bytes and passes them through, so it is left inactive
+                Game.LOGGER.warn("Packet filter handler is not on the tail side of the encoder, filtering on the server thread instead");
+            }
+        });
+    }
+
+    private static void uninstall(Channel channel, Handler handler) {
+        // Packets sent from now on are filtered inline, packets already queued still reach the handler before it is
+        // removed, since the removal is queued behind them
+        handler.active = false;
+        channel.attr(HANDLER_KEY).set(null);
+        channel.eventLoop().execute(() -> {
+            try {
+                channel.pipeline().remove(handler);
+            } catch (NoSuchElementException ignored) {
+            }
+        });
+    }
+
+    /**
+     * Applies filters to a packet being sent through a network handler, unless the {@link Handler} installed in the
+     * channel of the network handler applies them on the event loop instead.
+     * Packets of classes without any registered filters return immediately, without touching the channel.
+     * @param packet Packet being sent.
+     * @param networkHandler Network handler sending the packet.
+     * @param channel Channel of the network handler, or null if it is not connected.
+     * @return Packet to send instead, which may be the original packet.
+     */
+    public static @NotNull Packet<?> apply(@NotNull Packet<?> packet, @NotNull ServerPlayNetworkHandler networkHandler, @Nullable Channel channel) {
+        if (!(packet instanceof BundleS2CPacket) && !table.containsKey(packet.getClass())) return packet;
+        if (channel != null) {
+            var handler = channel.attr(HANDLER_KEY).get();
+            if (handler != null && handler.active) return packet;
+        }
+        return apply(packet, networkHandler.getPlayer());
+    }
+
+    private static List<Registration> registrations() {
+        var registrations = new ArrayList<Registration>();
+        for (var entry : table.values()) {
+            registrations.addAll(Arrays.asList(entry));
+        }
+        return registrations;
+    }
+
+    /**
+     * Resets the timing counters of all registered filters.
+     */
+    public static void reset() {
+        for (var registration : registrations()) {
+            registration.calls.reset();
+            registration.rewrites.reset();
+            registration.nanos.reset();
+        }
+    }
+
+    /**
+     * Describes the registered filters and their timing counters as human-readable lines, sorted by total time.
+     * @return List of lines.
+     */
+    public static @NotNull List<@NotNull String> describe() {
+        var registrations = registrations();
+        registrations.sort(Comparator.comparingLong((Registration registration) -> registration.nanos.sum()).reversed());
+
+        var format = new DecimalFormat("#.##");
+        var lines = new ArrayList<String>();
+
+        lines.add("Packet filters (" + registrations.size() + " registered):");
+        for (var registration : registrations) {
+            long calls = registration.calls.sum();
+            long nanos = registration.nanos.sum();
+            lines.add(
+                "  - " + registration.name + " (" + registration.packetClass.getSimpleName() + "): " +
+                calls + " call(s), " + registration.rewrites.sum() + " rewrite(s), " +
+                format.format(nanos * 1e-6D) + "ms total, " +
+                format.format(calls > 0 ? (double) nanos / calls : 0.0D) + "ns average"
+            );
+        }
+
+        return lines;
+    }
+
+}
@@ -1,5 +1,7 @@
 package dev.foxgirl.mineseekdestroy.util;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import kotlin.jvm.internal.ArrayIteratorKt;
 import net.minecraft.util.math.*;
 import org.jetbrains.annotations.NotNull;
@@ -111,17 +113,22 @@ public final class Region implements Selection {
 
     public static final class Set extends AbstractSet<Region> implements Selection {
 
+        private static final int INDEX_THRESHOLD = 8;
+
         private final Region[] regions;
+        private final Index<Set> index;
 
         public Set(@NotNull Region... elements) {
             this(Arrays.asList(elements));
         }
         public Set(@NotNull Collection<Region> collection) {
             regions = new LinkedHashSet<>(collection).toArray(new Region[0]);
+            index = regions.length > INDEX_THRESHOLD ? Index.<Set>builder().add(this, this).build() : null;
         }
 
         @Override
         public boolean contains(int x, int y, int z) {
+            if (index != null) return index.contains(x, y, z);
             for (var region : regions) if (region.contains(x, y, z)) return true;
             return false;
         }
@@ -137,4 +144,170 @@ public final class Region implements Selection {
 
     }
 
+    /**
+     * Spatial index answering which keyed regions contain a point, built once and never modified.
+     * Regions are bucketed by the 16x16 block columns they overlap, so a query only tests the regions near the point.
+     * Each key is assigned a bit in insertion order, so an index holds at most 64 distinct keys.
+     */
+    public static final class Index<K> implements Selection {
+
+        /**
+         * Regions overlapping more columns than this are not bucketed and are tested by every query instead.
+         */
+        private static final long BUCKET_LIMIT = 4096;
+
+        private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+
+        private record Entry(Region region, long mask) {
+            private boolean contains(int x, int y, int z) {
+                return region.contains(x, y, z);
+            }
+        }
+
+        private final List<K> keys;
+        private final Long2ObjectOpenHashMap<Entry[]> buckets;
+        private final Entry[] unbucketed;
+
+        private Index(Builder<K> builder) {
+            keys = List.copyOf(builder.keys);
+
+            var bucketLists = new Long2ObjectOpenHashMap<ArrayList<Entry>>();
+            var unbucketedList = new ArrayList<Entry>();
+
+            for (int i = 0, size = builder.regions.size(); i < size; i++) {
+                var region = builder.regions.get(i);
+                var entry = new Entry(region, builder.masks.getLong(i));
+                if (region.getChunkCount() > BUCKET_LIMIT) {
+                    unbucketedList.add(entry);
+                    continue;
+                }
+                var chunkStart = region.getChunkStart();
+                var chunkEnd = region.getChunkEnd();
+                for (int x = chunkStart.x; x <= chunkEnd.x; x++) {
+                    for (int z = chunkStart.z; z <= chunkEnd.z; z++) {
+                        bucketLists.computeIfAbsent(ChunkPos.toLong(x, z), (key) -> new ArrayList<>(2)).add(entry);
+                    }
+                }
+            }
+
+            buckets = new Long2ObjectOpenHashMap<>(bucketLists.size());
+            for (var bucket : bucketLists.long2ObjectEntrySet()) {
+                buckets.put(bucket.getLongKey(), bucket.getValue().toArray(EMPTY_ENTRIES));
+            }
+            buckets.trim();
+            unbucketed = unbucketedList.toArray(EMPTY_ENTRIES);
+        }
+
+        public static <K> @NotNull Builder<K> builder() {
+            return new Builder<>();
+        }
+
+        public static final class Builder<K> {
+            private final ArrayList<K> keys = new ArrayList<>();
+            private final ArrayList<Region> regions = new ArrayList<>();
+            private final LongArrayList masks = new LongArrayList();
+
+            private Builder() {
+            }
+
+            private long bit(K key) {
+                int index = keys.indexOf(key);
+                if (index < 0) {
+                    if (keys.size() >= 64) {
+                        throw new IllegalStateException("Region index cannot hold more than 64 keys");
+                    }
+                    index = keys.size();
+                    keys.add(key);
+                }
+                return 1L << index;
+            }
+
+            public @NotNull Builder<K> add(@NotNull K key, @NotNull Region region) {
+                Objects.requireNonNull(key, "Argument 'key'");
+                Objects.requireNonNull(region, "Argument 'region'");
+                regions.add(region);
+                masks.add(bit(key));
+                return this;
+            }
+
+            public @NotNull Builder<K> add(@NotNull K key, @NotNull Collection<Region> regions) {
+                Objects.requireNonNull(key, "Argument 'key'");
+                Objects.requireNonNull(regions, "Argument 'regions'");
+                long bit = bit(key);
+                for (var region : regions) {
+                    this.regions.add(Objects.requireNonNull(region, "Element in argument 'regions'"));
+                    masks.add(bit);
+                }
+                return this;
+            }
+
+            public @NotNull Index<K> build() {
+                return new Index<>(this);
+            }
+        }
+
+        /**
+         * Queries which keys have a region containing the given point.
+         * @return Bitmask of matching keys, see {@link #mask(Object)}.
+         */
+        public long query(int x, int y, int z) {
+            long result = 0L;
+            for (var entry : unbucketed) {
+                if ((result & entry.mask) == 0L && entry.contains(x, y, z)) result |= entry.mask;
+            }
+            var bucket = buckets.get(ChunkPos.toLong(x >> 4, z >> 4));
+            if (bucket != null) {
+                for (var entry : bucket) {
+                    if ((result & entry.mask) == 0L && entry.contains(x, y, z)) result |= entry.mask;
+                }
+            }
+            return result;
+        }
+
+        public long query(@NotNull Vec3i pos) {
+            return query(pos.getX(), pos.getY(), pos.getZ());
+        }
+
+        /**
+         * Returns the bitmask of the given key, or zero if the index has no regions for it.
+         */
+        public long mask(@NotNull K key) {
+            int index = keys.indexOf(key);
+            return index < 0 ? 0L : 1L << index;
+        }
+
+        @SafeVarargs
+        public final long mask(@NotNull K @NotNull ... keys) {
+            long result = 0L;
+            for (var key : keys) result |= mask(key);
+            return result;
+        }
+
+        /**
+         * Returns the keys present in the given bitmask, in insertion order.
+         */
+        public @NotNull List<@NotNull K> keys(long mask) {
+            var result = new ArrayList<K>(Long.bitCount(mask));
+            for (int i = 0, size = keys.size(); i < size; i++) {
+                if ((mask & (1L << i)) != 0L) result.add(keys.get(i));
+            }
+            return result;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            for (var entry : unbucketed) {
+                if (entry.contains(x, y, z)) return true;
+            }
+            var bucket = buckets.get(ChunkPos.toLong(x >> 4, z >> 4));
+            if (bucket != null) {
+                for (var entry : bucket) {
+                    if (entry.contains(x, y, z)) return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
 }
@@ -106,6 +106,12 @@ object Rules {
     @JvmStatic var countdownTextStayDuration by IntRuleProperty(RULE_COUNTDOWN_TEXT_STAY_DURATION)
     @JvmStatic var countdownTextFadeoutDuration by IntRuleProperty(RULE_COUNTDOWN_TEXT_FADEOUT_DURATION)
 
+    @JvmStatic var editorBudgetDuration by DoubleRuleProperty(RULE_EDITOR_BUDGET_DURATION)
+
+    @JvmStatic var schedulerBudgetDuration by DoubleRuleProperty(RULE_SCHEDULER_BUDGET_DURATION)
+
+    @JvmStatic var packetFiltersOffThread by BooleanRuleProperty(RULE_PACKET_FILTERS_OFF_THREAD)
+
     private sealed class RuleProperty<T : GameRules.Rule<T>>(protected val key: GameRules.Key<T>) {
         protected val game get() = getGame()
     }
@@ -5,6 +5,10 @@ import java.util.concurrent.CompletableFuture
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.function.BiConsumer
 import kotlin.coroutines.*
+import kotlin.coroutines.intrinsics.COROUTINE_SUSPENDED
+import kotlin.coroutines.intrinsics.createCoroutineUnintercepted
+import kotlin.coroutines.intrinsics.intercepted
+import kotlin.coroutines.intrinsics.suspendCoroutineUninterceptedOrReturn
 
 object Async {
 
@@ -13,25 +17,39 @@ object Async {
         synchronized(activeContexts) {
             activeContexts.add(context)
         }
+        AsyncProfiler.open(context)
     }
     private fun onCoroutineClose(context: CoroutineContext) {
         synchronized(activeContexts) {
             activeContexts.remove(context)
         }
+        AsyncProfiler.close(context)
     }
 
-    private class CompletableFutureContinuation<T>(override val context: CoroutineContext) : CompletableFuture<T>(), Continuation<T> {
+    private class CompletableFutureContinuation<T>(override val context: CoroutineContext) : CompletableFuture<T>(), Continuation<T>, Scope.Child {
         init {
             whenComplete { _, _ -> onCoroutineClose(context) }
         }
-        fun startCoroutine(coroutine: suspend () -> T): CompletableFutureContinuation<T> {
+        private fun open() {
             onCoroutineOpen(context)
-            coroutine.startCoroutine(this)
+            val scope = context.lifetime.scope
+            if (scope != null && scope.attach(this)) {
+                whenComplete { _, _ -> scope.detach(this) }
+            }
+        }
+        override fun cancel(): Boolean {
+            if (isDone) return false
+            (context as AsyncCoroutineContext).cancel()
+            return true
+        }
+        fun startCoroutine(coroutine: suspend () -> T): CompletableFutureContinuation<T> {
+            open()
+            context.dispatcher.start(coroutine.createCoroutineUnintercepted(this))
             return this
         }
         fun <R> startCoroutine(coroutine: suspend R.() -> T, receiver: R): CompletableFutureContinuation<T> {
-            onCoroutineOpen(context)
-            coroutine.startCoroutine(receiver, this)
+            open()
+            context.dispatcher.start(coroutine.createCoroutineUnintercepted(receiver, this))
             return this
         }
         override fun resumeWith(result: Result<T>) {
@@ -53,12 +71,18 @@ object Async {
     private fun createDescriptor(name: String?): Descriptor {
         return if (name != null) Descriptor(name) else anonymousDescriptor
     }
-    private fun createContext(name: String?, lifetime: Lifetime): CoroutineContext {
-        return AsyncCoroutineContext(createDescriptor(name), lifetime)
+    private fun createContext(name: String?, lifetime: Lifetime, dispatcher: Dispatcher = Dispatcher.Tick): CoroutineContext {
+        return AsyncCoroutineContext(createDescriptor(name), lifetime, dispatcher)
     }
 
     fun background(): Lifetime = BackgroundLifetime
 
+    /**
+     * Creates a new root [Scope], which is never cancelled until [Scope.cancel] is called.
+     */
+    @JvmStatic
+    fun scope(name: String): Scope = background().scope(name)
+
     fun <T> execute(coroutine: suspend () -> T) = execute(null, background(), coroutine)
     fun <T> execute(name: String?, coroutine: suspend () -> T) = execute(name, background(), coroutine)
     fun <T> execute(name: String?, lifetime: Lifetime, coroutine: suspend () -> T): CompletableFuture<T> {
@@ -72,6 +96,15 @@ object Async {
         }
     }
 
+    /**
+     * Executes a coroutine on [Dispatcher.Background] pool threads, for pure computation that never touches world state.
+     */
+    fun <T> compute(coroutine: suspend () -> T) = compute(null, background(), coroutine)
+    fun <T> compute(name: String?, coroutine: suspend () -> T) = compute(name, background(), coroutine)
+    fun <T> compute(name: String?, lifetime: Lifetime, coroutine: suspend () -> T): CompletableFuture<T> {
+        return execute(createContext(name, lifetime, Dispatcher.Background), coroutine)
+    }
+
     fun <T> go(coroutine: suspend Async.() -> T) = go(null, background(), coroutine)
     fun <T> go(name: String?, coroutine: suspend Async.() -> T) = go(name, background(), coroutine)
     fun <T> go(name: String?, lifetime: Lifetime, coroutine: suspend Async.() -> T) {
@@ -87,12 +120,12 @@ object Async {
 
     suspend fun <T> innerExecute(coroutine: suspend () -> T) = innerExecute(lifetime(), coroutine)
     suspend fun <T> innerExecute(lifetime: Lifetime, coroutine: suspend () -> T): CompletableFuture<T> {
-        return execute(AsyncCoroutineContext(coroutineContext.descriptor, lifetime), coroutine)
+        return execute(AsyncCoroutineContext(coroutineContext.descriptor, lifetime, coroutineContext.dispatcher), coroutine)
     }
 
     suspend fun <T> innerGo(coroutine: suspend Async.() -> T) = innerGo(lifetime(), coroutine)
     suspend fun <T> innerGo(lifetime: Lifetime, coroutine: suspend Async.() -> T) {
-        go(AsyncCoroutineContext(coroutineContext.descriptor, lifetime), coroutine)
+        go(AsyncCoroutineContext(coroutineContext.descriptor, lifetime, coroutineContext.dispatcher), coroutine)
     }
 
     private fun getCancellation(throwable: Throwable?): CanceledException? = getCancellation(throwable, HashSet())
@@ -235,11 +268,81 @@ object Async {
         }
     }
 
-    suspend fun delay() {
-        suspendCoroutine { Scheduler.now(ResumingCallback(it)) }
+    /**
+     * Reusable timer owned by a single coroutine, parks the coroutine in the [Scheduler] without allocating.
+     */
+    internal class Timer : Scheduler.Callback {
+        // Replaced once cancelled, since a cancelled schedule may still be linked into the scheduler,
+        // and when parking with a different priority, since a schedule's priority is fixed
+        @Volatile private var schedule = Scheduler.timer(Scheduler.Priority.NORMAL, this)
+        private var priority = Scheduler.Priority.NORMAL
+        private var continuation: Continuation<Unit>? = null
+
+        private fun renew(priority: Scheduler.Priority) {
+            this.priority = priority
+            schedule = Scheduler.timer(priority, this)
+        }
+
+        fun parkNow(continuation: Continuation<Unit>, priority: Scheduler.Priority) {
+            this.continuation = continuation
+            if (this.priority !== priority) renew(priority)
+            if (!Scheduler.armNow(schedule)) {
+                renew(priority)
+                Scheduler.armNow(schedule)
+            }
+        }
+        fun parkDelay(continuation: Continuation<Unit>, seconds: Double, priority: Scheduler.Priority) {
+            this.continuation = continuation
+            if (this.priority !== priority) renew(priority)
+            if (!Scheduler.armDelay(schedule, seconds)) {
+                renew(priority)
+                Scheduler.armDelay(schedule, seconds)
+            }
+        }
+
+        override fun invoke(schedule: Scheduler.Schedule) {
+            val continuation = continuation!!
+            this.continuation = null
+            continuation.resumeChecked(Unit)
+        }
+
+        fun cancel() {
+            if (!schedule.cancel()) return
+            val continuation = continuation ?: return
+            this.continuation = null
+            continuation.resumeWithException(CanceledException(continuation.context))
+        }
+    }
+
+    private suspend inline fun park(crossinline block: (Timer, Continuation<Unit>) -> Unit) {
+        val timer = (coroutineContext as AsyncCoroutineContext).timer
+        suspendCoroutineUninterceptedOrReturn<Unit> {
+            block(timer, it.intercepted())
+            COROUTINE_SUSPENDED
+        }
+    }
+
+    /**
+     * Suspends until the next scheduler pass.
+     * @param priority Priority class of the wakeup, cosmetic loops should use [Scheduler.Priority.COSMETIC].
+     */
+    suspend fun delay(priority: Scheduler.Priority = Scheduler.Priority.NORMAL) {
+        if (coroutineContext is AsyncCoroutineContext) {
+            park { timer, continuation -> timer.parkNow(continuation, priority) }
+        } else {
+            suspendCoroutine { Scheduler.now(priority, ResumingCallback(it)) }
+        }
     }
-    suspend fun delay(seconds: Double) {
-        suspendCoroutine { Scheduler.delay(seconds, ResumingCallback(it)) }
+    /**
+     * Suspends for the given number of seconds.
+     * @param priority Priority class of the wakeup, cosmetic loops should use [Scheduler.Priority.COSMETIC].
+     */
+    suspend fun delay(seconds: Double, priority: Scheduler.Priority = Scheduler.Priority.NORMAL) {
+        if (coroutineContext is AsyncCoroutineContext) {
+            park { timer, continuation -> timer.parkDelay(continuation, seconds, priority) }
+        } else {
+            suspendCoroutine { Scheduler.delay(seconds, priority, ResumingCallback(it)) }
+        }
     }
 
     suspend fun until(condition: suspend () -> Boolean) {
@@ -254,24 +357,43 @@ object Async {
 internal class AsyncCoroutineContext(
     private val descriptor: Descriptor,
     private val lifetime: Lifetime,
+    private val dispatcher: Dispatcher,
 ) : CoroutineContext {
+    private var timerOrNull: Async.Timer? = null
+
+    // A coroutine runs sequentially, so its timer is only ever used by one suspension at a time
+    val timer get() = timerOrNull ?: Async.Timer().also { timerOrNull = it }
+
+    // Time this coroutine last suspended at, recorded by the AsyncProfiler
+    @Volatile var suspendedAt = 0L
+
+    /**
+     * Wakes this coroutine up with a [CanceledException] if it is parked on its timer, otherwise the coroutine
+     * observes the cancellation of its lifetime the next time it resumes.
+     */
+    fun cancel() {
+        timerOrNull?.cancel()
+    }
+
     @Suppress("UNCHECKED_CAST")
     override fun <E : CoroutineContext.Element> get(key: CoroutineContext.Key<E>): E? {
         if (key == Descriptor.Key) return descriptor as E
         if (key == Lifetime.Key) return lifetime as E
+        if (key == ContinuationInterceptor) return dispatcher as E
         return null
     }
 
     override fun minusKey(key: CoroutineContext.Key<*>): CoroutineContext {
-        if (key == Descriptor.Key) return lifetime
-        if (key == Lifetime.Key) return descriptor
+        if (key == Descriptor.Key) return lifetime + dispatcher
+        if (key == Lifetime.Key) return descriptor + dispatcher
+        if (key == ContinuationInterceptor) return descriptor + lifetime
         return this
     }
 
     override fun <R> fold(initial: R, operation: (R, CoroutineContext.Element) -> R): R
-        = operation(operation(initial, descriptor), lifetime)
+        = operation(operation(operation(initial, descriptor), lifetime), dispatcher)
 
-    override fun toString() = "AsyncCoroutineContext(descriptor=$descriptor, lifetime=$lifetime)"
+    override fun toString() = "AsyncCoroutineContext(descriptor=$descriptor, lifetime=$lifetime, dispatcher=$dispatcher)"
 }
 
 private val anonymousDescriptor = Descriptor("anonymous")
@@ -282,6 +404,7 @@ val CoroutineContext.isCancelled get() = lifetime.isCancelled
 val Continuation<*>.isCancelled get() = context.isCancelled
 
 val CoroutineContext.descriptor get() = get(Descriptor.Key) ?: unknownDescriptor
+val CoroutineContext.dispatcher get() = get(ContinuationInterceptor) as? Dispatcher ?: Dispatcher.Tick
 val CoroutineContext.name get() = descriptor.name
 val Continuation<*>.name get() = context.name
 
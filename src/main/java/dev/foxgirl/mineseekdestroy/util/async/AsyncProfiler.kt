@@ -0,0 +1,167 @@
+package dev.foxgirl.mineseekdestroy.util.async
+
+import dev.foxgirl.mineseekdestroy.Game
+import java.text.DecimalFormat
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * Opt-in profiler for [Async] coroutines, accounts resumptions, time spent running on the server thread and time
+ * spent suspended, grouped by [Descriptor] name.
+ */
+object AsyncProfiler {
+
+    private const val SUMMARY_INTERVAL = 60.0
+    private const val SUMMARY_LIMIT = 8
+
+    private class Stats(val name: String) {
+        var live = 0
+        var started = 0L
+        var resumptions = 0L
+        var tickNanos = 0L
+        var tickNanosMax = 0L
+        var suspensions = 0L
+        var suspendNanos = 0L
+    }
+
+    private val stats = HashMap<String, Stats>()
+
+    @Volatile
+    var isEnabled = false
+        private set
+
+    private var summary: Scheduler.Schedule? = null
+
+    // Time spent in coroutines resumed inside another resumption on the server thread, which is excluded from the
+    // outer coroutine's time
+    private var nestedNanos = 0L
+
+    private fun stats(context: CoroutineContext): Stats {
+        val name = context.name
+        return stats[name] ?: Stats(name).also { stats[name] = it }
+    }
+
+    internal fun open(context: CoroutineContext) {
+        if (!isEnabled) return
+        synchronized(stats) {
+            val stats = stats(context)
+            stats.live++
+            stats.started++
+        }
+    }
+
+    internal fun close(context: CoroutineContext) {
+        if (!isEnabled) return
+        synchronized(stats) {
+            val stats = stats(context)
+            if (stats.live > 0) stats.live--
+        }
+    }
+
+    /**
+     * Runs a resumption of the coroutine with the given context, recording it if the profiler is enabled.
+     * Callers on hot paths should check [isEnabled] first and resume directly, since the block is not inlined.
+     */
+    internal fun resume(context: CoroutineContext, block: () -> Unit) {
+        if (!isEnabled) {
+            block()
+            return
+        }
+
+        val asyncContext = context as? AsyncCoroutineContext
+        val onThread = Scheduler.isOnThread()
+
+        val start = System.nanoTime()
+        val suspendedAt = asyncContext?.suspendedAt ?: 0L
+
+        val nestedOuter = nestedNanos
+        if (onThread) nestedNanos = 0L
+        try {
+            block()
+        } finally {
+            val end = System.nanoTime()
+            val elapsed = end - start
+            var own = 0L
+            if (onThread) {
+                own = elapsed - nestedNanos
+                nestedNanos = nestedOuter + elapsed
+            }
+            asyncContext?.suspendedAt = end
+            synchronized(stats) {
+                val stats = stats(context)
+                stats.resumptions++
+                if (onThread) {
+                    stats.tickNanos += own
+                    if (stats.tickNanosMax < own) stats.tickNanosMax = own
+                }
+                if (suspendedAt != 0L) {
+                    stats.suspensions++
+                    stats.suspendNanos += start - suspendedAt
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables the profiler and starts logging a summary periodically.
+     * Coroutines that were already running before are only partially accounted for.
+     */
+    @JvmStatic
+    fun enable() {
+        if (isEnabled) return
+        isEnabled = true
+        summary = Scheduler.interval(SUMMARY_INTERVAL, Scheduler.Priority.COSMETIC) {
+            Game.LOGGER.info("Async profiler summary:")
+            describe().forEach { Game.LOGGER.info(it) }
+        }
+    }
+
+    /**
+     * Disables the profiler, keeping all samples recorded so far.
+     */
+    @JvmStatic
+    fun disable() {
+        if (!isEnabled) return
+        isEnabled = false
+        summary?.cancel()
+        summary = null
+    }
+
+    /**
+     * Discards all recorded samples.
+     */
+    @JvmStatic
+    fun reset() {
+        synchronized(stats) { stats.clear() }
+    }
+
+    /**
+     * Describes the recorded samples as human-readable lines, sorted by time spent on the server thread.
+     * @return List of lines.
+     */
+    @JvmStatic
+    fun describe(): List<String> {
+        val list = synchronized(stats) {
+            stats.values.map {
+                Stats(it.name).apply {
+                    live = it.live; started = it.started
+                    resumptions = it.resumptions; tickNanos = it.tickNanos; tickNanosMax = it.tickNanosMax
+                    suspensions = it.suspensions; suspendNanos = it.suspendNanos
+                }
+            }
+        }.sortedByDescending { it.tickNanos }
+
+        val format = DecimalFormat("#.##")
+        val lines = mutableListOf<String>()
+        lines.add("Async profiler (${if (isEnabled) "enabled" else "disabled"}, ${list.size} descriptor(s)):")
+        for (stats in list.take(SUMMARY_LIMIT)) {
+            val suspendAverage = if (stats.suspensions > 0) stats.suspendNanos / stats.suspensions else 0L
+            lines.add(
+                "  - ${stats.name}: ${stats.live} live, ${stats.started} started, ${stats.resumptions} resumption(s), " +
+                "${format.format(stats.tickNanos * 1e-6D)}ms on tick (${format.format(stats.tickNanosMax * 1e-6D)}ms max), " +
+                "${format.format(suspendAverage * 1e-6D)}ms average suspend"
+            )
+        }
+        return lines
+    }
+
+}
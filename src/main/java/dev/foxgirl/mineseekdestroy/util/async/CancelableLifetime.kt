@@ -4,6 +4,8 @@ class CancelableLifetime internal constructor(private val base: Lifetime) : Life
 
     override var isCancelled = false; get() = base.isCancelled || field; private set
 
+    override val scope get() = base.scope
+
     fun cancel() {
         isCancelled = true
     }
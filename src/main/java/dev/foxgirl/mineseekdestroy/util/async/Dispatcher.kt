@@ -0,0 +1,85 @@
+package dev.foxgirl.mineseekdestroy.util.async
+
+import java.util.concurrent.ForkJoinPool
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.Continuation
+import kotlin.coroutines.ContinuationInterceptor
+import kotlin.coroutines.resume
+
+/**
+ * Decides which thread a coroutine runs on after it resumes from a suspension.
+ */
+sealed class Dispatcher : AbstractCoroutineContextElement(ContinuationInterceptor), ContinuationInterceptor {
+
+    protected abstract fun isDispatchNeeded(): Boolean
+    protected abstract fun dispatch(block: Runnable)
+
+    internal abstract fun start(continuation: Continuation<Unit>)
+
+    override fun <T> interceptContinuation(continuation: Continuation<T>): Continuation<T> =
+        DispatchedContinuation(this, continuation)
+
+    private class DispatchedContinuation<T>(
+        private val dispatcher: Dispatcher,
+        private val continuation: Continuation<T>,
+    ) : Continuation<T> {
+        override val context get() = continuation.context
+
+        override fun resumeWith(result: Result<T>) {
+            if (dispatcher.isDispatchNeeded()) {
+                dispatcher.dispatch { resumeProfiled(result) }
+            } else {
+                resumeProfiled(result)
+            }
+        }
+
+        // The profiler is checked before wrapping the resumption, so that no lambda is allocated while it is disabled
+        private fun resumeProfiled(result: Result<T>) {
+            if (AsyncProfiler.isEnabled) {
+                AsyncProfiler.resume(context) { continuation.resumeWith(result) }
+            } else {
+                continuation.resumeWith(result)
+            }
+        }
+    }
+
+    /**
+     * Resumes coroutines on the server thread while the [Scheduler] is running tasks, trampolining through
+     * [Scheduler.now] when resumed from anywhere else. Coroutines start immediately on the calling thread.
+     */
+    object Tick : Dispatcher() {
+        override fun isDispatchNeeded() = !Scheduler.isRunning()
+        override fun dispatch(block: Runnable) {
+            Scheduler.now { block.run() }
+        }
+        override fun start(continuation: Continuation<Unit>) {
+            if (AsyncProfiler.isEnabled) {
+                AsyncProfiler.resume(continuation.context) { continuation.resume(Unit) }
+            } else {
+                continuation.resume(Unit)
+            }
+        }
+
+        override fun toString() = "Dispatcher.Tick"
+    }
+
+    /**
+     * Starts and resumes coroutines on pool threads, for pure computation that never touches world state.
+     */
+    object Background : Dispatcher() {
+        override fun isDispatchNeeded() = true
+        override fun dispatch(block: Runnable) {
+            ForkJoinPool.commonPool().execute(block)
+        }
+        override fun start(continuation: Continuation<Unit>) {
+            if (AsyncProfiler.isEnabled) {
+                dispatch { AsyncProfiler.resume(continuation.context) { continuation.resume(Unit) } }
+            } else {
+                dispatch { continuation.resume(Unit) }
+            }
+        }
+
+        override fun toString() = "Dispatcher.Background"
+    }
+
+}
@@ -10,6 +10,11 @@ sealed class Lifetime : CoroutineContext.Element {
 
     abstract val isCancelled: Boolean
 
+    /**
+     * Nearest enclosing [Scope], which coroutines started under this lifetime are attached to.
+     */
+    internal open val scope: Scope? get() = null
+
     override fun toString() = "Lifetime(isCancelled=$isCancelled)"
 
     fun withCondition(condition: () -> Boolean): Lifetime = ConditionLifetime(this, condition)
@@ -19,6 +24,8 @@ sealed class Lifetime : CoroutineContext.Element {
 
     fun withCancel() = CancelableLifetime(this)
 
+    fun scope(name: String) = Scope(this, name)
+
     fun <T> execute(name: String? = null, coroutine: suspend () -> T) = Async.execute(name, this, coroutine)
     fun <T> go(name: String? = null, coroutine: suspend Async.() -> T) = Async.go(name, this, coroutine)
 
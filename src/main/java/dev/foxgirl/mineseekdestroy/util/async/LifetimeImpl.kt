@@ -11,6 +11,7 @@ internal class ConditionLifetime(
     private val condition: () -> Boolean,
 ) : Lifetime() {
     override val isCancelled get() = base.isCancelled || condition()
+    override val scope get() = base.scope
 }
 
 internal class TimeoutLifetime(
@@ -18,4 +19,5 @@ internal class TimeoutLifetime(
     private val expiresAt: Instant,
 ) : Lifetime() {
     override val isCancelled get() = base.isCancelled || Instant.now() >= expiresAt
+    override val scope get() = base.scope
 }
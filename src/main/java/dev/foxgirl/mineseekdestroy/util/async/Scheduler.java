@@ -3,8 +3,8 @@ package dev.foxgirl.mineseekdestroy.util.async;
 import dev.foxgirl.mineseekdestroy.Game;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.LinkedHashSet;
-import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class Scheduler {
 
@@ -25,6 +25,21 @@ public final class Scheduler {
         boolean cancel();
     }
 
+    /**
+     * Priority class of a task, determines the order tasks are executed in
+     * within a tick and which tasks are deferred when a tick runs out of time.
+     */
+    public enum Priority {
+        /** Gameplay-critical tasks, always executed in the tick they become ready. */
+        CRITICAL,
+        /** Regular tasks, deferred to the next tick once the tick's budget is spent. */
+        NORMAL,
+        /** Cosmetic tasks such as particles and sounds, executed last and deferred first. */
+        COSMETIC,
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
     /**
      * Callback represents a task callback to be invoked as part of a task's
      * execution.
@@ -57,14 +72,132 @@ public final class Scheduler {
         return ns;
     }
 
-    private static final LinkedHashSet<Executable> EXECUTE_QUEUE = new LinkedHashSet<>(128);
-    private static final PriorityQueue<Task> WAITING_QUEUE = new PriorityQueue<>(128);
+    // Timers are kept in a hierarchical timing wheel with one slot per 50ms server tick, each level covering 64 slots
+    // of the level below it, so scheduling and cancelling are O(1) regardless of how many timers are live
+
+    // The wheel and its lists are only ever touched by the server thread, other threads submit through a lock-free
+    // inbox that is drained once at the start of every update
+
+    private static final long TICK_NS = 50_000_000L;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_LEVELS = 4;
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_PENDING = 1;
+    private static final int STATE_QUEUED = 2;
+    private static final int STATE_RUNNING = 3;
+    private static final int STATE_CANCELLED = 4;
+    private static final int STATE_REARMED = 5;
+
+    private static final AtomicReference<Executable> INBOX = new AtomicReference<>();
+
+    private static final Bucket[][] WHEEL = new Bucket[WHEEL_LEVELS][WHEEL_SIZE];
+    private static final Bucket OVERFLOW = new Bucket();
+    private static final Bucket[] READY = new Bucket[PRIORITIES.length];
+    private static final Bucket[] RUNNING = new Bucket[PRIORITIES.length];
+
+    static {
+        for (var level : WHEEL) {
+            for (int i = 0; i < WHEEL_SIZE; i++) level[i] = new Bucket();
+        }
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            READY[i] = new Bucket();
+            RUNNING[i] = new Bucket();
+        }
+    }
+
+    private static long cursor = timeNow() / TICK_NS;
+
+    private static volatile Thread thread = null;
+
+    static boolean isOnThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    private static boolean running = false;
+
+    /**
+     * Checks if the current thread is the server thread, and the scheduler
+     * is currently executing tasks. Used by {@link Dispatcher.Tick} to
+     * resume coroutines in place.
+     */
+    static boolean isRunning() {
+        return isOnThread() && running;
+    }
+
+    private static long tickOf(long time) {
+        return (time + TICK_NS - 1) / TICK_NS;
+    }
+
+    /**
+     * Intrusive doubly-linked list of executables, linked through a sentinel node.
+     */
+    private static final class Bucket {
+        private final Executable head = new Executable(null, null);
+
+        private Bucket() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void add(Executable executable) {
+            var tail = head.prev;
+            executable.prev = tail;
+            executable.next = head;
+            tail.next = executable;
+            head.prev = executable;
+        }
+
+        private Executable poll() {
+            var executable = head.next;
+            if (executable == head) return null;
+            executable.unlink();
+            return executable;
+        }
+
+        private void transferTo(Bucket other) {
+            var first = head.next;
+            if (first == head) return;
+            var last = head.prev;
+            var tail = other.head.prev;
+            tail.next = first;
+            first.prev = tail;
+            last.next = other.head;
+            other.head.prev = last;
+            head.next = head;
+            head.prev = head;
+        }
+    }
 
     private static class Executable implements Schedule {
+        private static final AtomicIntegerFieldUpdater<Executable> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Executable.class, "state");
+
         private final Callback callback;
+        private final Priority priority;
 
-        private Executable(Callback callback) {
+        private Executable prev;
+        private Executable next;
+        private Executable inboxNext;
+        volatile int state = STATE_IDLE;
+
+        private Executable(Callback callback, Priority priority) {
             this.callback = callback;
+            this.priority = priority;
+        }
+
+        boolean transition(int expected, int updated) {
+            return STATE.compareAndSet(this, expected, updated);
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
         }
 
         private void execute() {
@@ -77,90 +210,206 @@ public final class Scheduler {
         }
 
         Schedule schedule() {
-            synchronized (EXECUTE_QUEUE) { EXECUTE_QUEUE.add(this); }
+            if (isOnThread()) {
+                state = STATE_QUEUED;
+                enqueue();
+            } else {
+                state = STATE_PENDING;
+                push();
+            }
             return this;
         }
 
+        void push() {
+            Executable head;
+            do {
+                head = INBOX.get();
+                inboxNext = head;
+            } while (!INBOX.compareAndSet(head, this));
+        }
+
+        void enqueue() {
+            READY[priority.ordinal()].add(this);
+        }
+
+        void finish() {
+            transition(STATE_RUNNING, STATE_IDLE);
+        }
+
         @Override
         public boolean cancel() {
-            synchronized (EXECUTE_QUEUE) { return EXECUTE_QUEUE.remove(this); }
+            while (true) {
+                int state = this.state;
+                if (state != STATE_PENDING && state != STATE_QUEUED) return false;
+                if (transition(state, STATE_CANCELLED)) {
+                    // Cancelled schedules are unlinked immediately on the server thread, otherwise they are dropped
+                    // by the server thread the next time it encounters them
+                    if (prev != null && isOnThread()) unlink();
+                    return true;
+                }
+            }
         }
 
         @Override
         public String toString() {
-            return "Executable{callback.getClass()=" + callback.getClass() + ", callback=" + callback + "}";
+            return "Executable{state=" + state + ", priority=" + priority + ", callback.getClass()=" + (callback == null ? null : callback.getClass()) + ", callback=" + callback + "}";
         }
     }
 
-    private static final class Task extends Executable implements Comparable<Task> {
+    private static final class Task extends Executable {
         private long time;
+        private long tick;
         private final long period;
 
-        private Task(Callback callback, long time, long period) {
-            super(callback);
+        private Task(Callback callback, Priority priority, long time, long period) {
+            super(callback, priority);
             if (time < 0) throw new IllegalArgumentException("Invalid calculated time");
             if (period < -1) throw new IllegalArgumentException("Invalid calculated time period");
             this.time = time;
             this.period = period;
         }
 
-        private boolean tryContinue() {
-            // Note that tryContinue is only ever called while synchronized on WAITING_QUEUE
-
-            // Ensure this task is ready to be executed
-            if (time > timeNow()) {
-                // Return false to indicate that this task is not ready, and we should stop traversing the queue
-                return false;
+        /**
+         * Re-arms this task to run once more, reusing it in place. Arming
+         * from inside the task's own callback takes effect once the callback
+         * returns.
+         * @param time Time to run at, or a negative value to run on the next
+         *   update like {@link #now(Callback)}.
+         * @return False if this task was cancelled, and cannot be reused.
+         */
+        boolean arm(long time) {
+            while (true) {
+                int state = this.state;
+                if (state == STATE_RUNNING) {
+                    this.time = time;
+                    if (transition(STATE_RUNNING, STATE_REARMED)) return true;
+                } else if (state == STATE_IDLE) {
+                    // Idle tasks are never linked into a list or the inbox, so they are safe to link again
+                    this.time = time;
+                    if (isOnThread()) {
+                        if (transition(STATE_IDLE, STATE_QUEUED)) {
+                            enqueue();
+                            return true;
+                        }
+                    } else {
+                        if (transition(STATE_IDLE, STATE_PENDING)) {
+                            push();
+                            return true;
+                        }
+                    }
+                } else if (state == STATE_CANCELLED) {
+                    // Tasks cancelled off the server thread stay linked into the wheel or the inbox until the server
+                    // thread drops them, linking them again would corrupt both
+                    return false;
+                } else {
+                    throw new IllegalStateException("Task is already armed");
+                }
             }
+        }
 
-            // Remove this task from the queue
-            WAITING_QUEUE.remove(this);
-
-            // Check if this task should be rescheduled, and update & re-add it to the queue if so
-            if (period >= 0) {
-                // Update the next execution time
-                time = Math.max(time + period, timeNow());
-                // Re-add this task to the queue asynchronously (avoids an infinite loop with period 0)
-                EXECUTE_QUEUE.add(new Executable((schedule) -> this.schedule()));
+        @Override
+        void enqueue() {
+            if (time < 0) {
+                super.enqueue();
+                return;
             }
-
-            // Call Executable's schedule method to add this task to the execute-next queue
-            super.schedule();
-
-            // Return true to indicate that we should continue onto the next task in the queue
-            return true;
+            tick = tickOf(time);
+            // Tasks that are already due run on the next tick at the earliest (avoids an infinite loop with period 0)
+            if (tick <= cursor) tick = cursor + 1;
+            place(this);
         }
 
         @Override
-        Schedule schedule() {
-            synchronized (WAITING_QUEUE) { WAITING_QUEUE.offer(this); }
-            return this;
+        void finish() {
+            // Periodic tasks re-arm in place, without allocating
+            if (period >= 0) {
+                if (transition(STATE_RUNNING, STATE_QUEUED)) {
+                    time = Math.max(time + period, timeNow());
+                    enqueue();
+                }
+            } else if (!transition(STATE_RUNNING, STATE_IDLE) && transition(STATE_REARMED, STATE_QUEUED)) {
+                enqueue();
+            }
         }
 
         @Override
         public boolean cancel() {
-            var removed = super.cancel();
-            synchronized (WAITING_QUEUE) {
-                var removedWaiting = WAITING_QUEUE.remove(this);
-                if (removedWaiting) removed = true;
+            if (period >= 0 && transition(STATE_RUNNING, STATE_CANCELLED)) {
+                // Cancelled from inside its own callback, prevent it from re-arming
+                return true;
+            }
+            if (transition(STATE_REARMED, STATE_CANCELLED)) {
+                return true;
             }
-            return removed;
+            return super.cancel();
         }
 
         @Override
-        public int compareTo(@NotNull Scheduler.Task other) {
-            return Long.compare(this.time, other.time);
+        public String toString() {
+            return "Task{time=" + time + ", tick=" + tick + ", period=" + period + ", super=" + super.toString() + "}";
         }
+    }
 
-        @Override
-        public String toString() {
-            return "Task{time=" + time + ", period=" + period + ", super=" + super.toString() + "}";
+    private static void place(Task task) {
+        long tick = task.tick;
+        for (int level = 0; level < WHEEL_LEVELS; level++) {
+            int shift = WHEEL_BITS * (level + 1);
+            if ((tick >>> shift) == (cursor >>> shift)) {
+                WHEEL[level][(int) (tick >>> (shift - WHEEL_BITS)) & WHEEL_MASK].add(task);
+                return;
+            }
+        }
+        OVERFLOW.add(task);
+    }
+
+    private static void cascade(Bucket bucket) {
+        Executable executable;
+        while ((executable = bucket.poll()) != null) {
+            if (executable.state == STATE_CANCELLED) continue;
+            place((Task) executable);
+        }
+    }
+
+    private static void advance() {
+        cursor++;
+        // Move tasks from higher levels down once the cursor enters their slot, starting from the highest level
+        for (int level = WHEEL_LEVELS; level >= 1; level--) {
+            int shift = WHEEL_BITS * level;
+            if ((cursor & ((1L << shift) - 1)) != 0) continue;
+            cascade(level == WHEEL_LEVELS ? OVERFLOW : WHEEL[level][(int) (cursor >>> shift) & WHEEL_MASK]);
+        }
+        var bucket = WHEEL[0][(int) cursor & WHEEL_MASK];
+        Executable executable;
+        while ((executable = bucket.poll()) != null) {
+            if (executable.state == STATE_CANCELLED) continue;
+            READY[executable.priority.ordinal()].add(executable);
+        }
+    }
+
+    private static void drain() {
+        // Take the whole inbox in one step, it is a stack so reverse it to restore submission order
+        var executable = INBOX.getAndSet(null);
+        Executable reversed = null;
+        while (executable != null) {
+            var next = executable.inboxNext;
+            executable.inboxNext = reversed;
+            reversed = executable;
+            executable = next;
+        }
+        while (reversed != null) {
+            var next = reversed.inboxNext;
+            reversed.inboxNext = null;
+            if (reversed.transition(STATE_PENDING, STATE_QUEUED)) reversed.enqueue();
+            reversed = next;
         }
     }
 
     /**
      * Updates this scheduler by executing all tasks that are ready to be
      * executed. Must be called from the main server thread only once per tick.
+     * Work beyond the {@link Game#RULE_SCHEDULER_BUDGET_DURATION} budget is
+     * carried over into the next tick, except for {@link Priority#CRITICAL}
+     * tasks which are always executed.
      * @throws IllegalStateException If invoked from the wrong thread.
      */
     public static void update() {
@@ -168,22 +417,41 @@ public final class Scheduler {
             throw new IllegalStateException("Scheduler execution started from the wrong thread");
         }
 
-        synchronized (WAITING_QUEUE) {
-            while (!WAITING_QUEUE.isEmpty()) {
-                boolean shouldContinue = WAITING_QUEUE.peek().tryContinue();
-                if (!shouldContinue) break;
-            }
+        thread = Thread.currentThread();
+
+        drain();
+
+        long target = timeNow() / TICK_NS;
+        while (cursor < target) advance();
+
+        // Tasks scheduled while running are added to the ready lists, and will be executed during the next update,
+        // tasks carried over from the previous update stay ahead of newly ready tasks
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            READY[i].transferTo(RUNNING[i]);
         }
 
-        Executable[] executables;
+        long budget = (long) (Game.getGame().getRuleDouble(Game.RULE_SCHEDULER_BUDGET_DURATION) * 1e+6D);
+        long deadline = budget > 0 ? timeNow() + budget : Long.MAX_VALUE;
 
-        synchronized (EXECUTE_QUEUE) {
-            executables = EXECUTE_QUEUE.toArray(new Executable[0]);
-            EXECUTE_QUEUE.clear();
+        running = true;
+        try {
+            run(RUNNING[Priority.CRITICAL.ordinal()], Long.MAX_VALUE);
+            run(RUNNING[Priority.NORMAL.ordinal()], deadline);
+            run(RUNNING[Priority.COSMETIC.ordinal()], deadline);
+        } finally {
+            running = false;
         }
+    }
 
-        for (var executable : executables) {
+    private static void run(Bucket bucket, long deadline) {
+        // Always execute at least one task, so that carried over work cannot be starved forever
+        boolean progressed = false;
+        Executable executable;
+        while ((!progressed || timeNow() < deadline) && (executable = bucket.poll()) != null) {
+            if (!executable.transition(STATE_QUEUED, STATE_RUNNING)) continue;
             executable.execute();
+            executable.finish();
+            progressed = true;
         }
     }
 
@@ -194,8 +462,19 @@ public final class Scheduler {
      * @throws NullPointerException If the provided callback is null.
      */
     public static @NotNull Schedule now(@NotNull Callback callback) {
+        return now(Priority.NORMAL, callback);
+    }
+    /**
+     * Schedules a task to be run (once) as soon as possible.
+     * @param priority Priority class of the task.
+     * @param callback Task callback to invoke.
+     * @return Newly created task schedule.
+     * @throws NullPointerException If the provided priority or callback is null.
+     */
+    public static @NotNull Schedule now(@NotNull Priority priority, @NotNull Callback callback) {
+        if (priority == null) throw new NullPointerException("Argument 'priority'");
         if (callback == null) throw new NullPointerException("Argument 'callback'");
-        return new Executable(callback).schedule();
+        return new Executable(callback, priority).schedule();
     }
 
     /**
@@ -207,10 +486,24 @@ public final class Scheduler {
      * @throws NullPointerException If the provided callback is null.
      */
     public static @NotNull Schedule delay(double seconds, @NotNull Callback callback) {
+        return delay(seconds, Priority.NORMAL, callback);
+    }
+    /**
+     * Schedules a task to be run (once) at some time in the future.
+     * @param seconds Delay in seconds to wait before execution.
+     * @param priority Priority class of the task.
+     * @param callback Task callback to invoke.
+     * @return Newly created task schedule.
+     * @throws IllegalArgumentException If the provided delay is invalid.
+     * @throws NullPointerException If the provided priority or callback is null.
+     */
+    public static @NotNull Schedule delay(double seconds, @NotNull Priority priority, @NotNull Callback callback) {
+        if (priority == null) throw new NullPointerException("Argument 'priority'");
         if (callback == null) throw new NullPointerException("Argument 'callback'");
         long ns = timeConvert(seconds);
-        return new Task(callback, timeNow() + ns, -1).schedule();
+        return new Task(callback, priority, timeNow() + ns, -1).schedule();
     }
+
     /**
      * Schedules a task to be run multiple times on an interval.
      * @param seconds Delay in seconds to wait before and between executions.
@@ -220,9 +513,58 @@ public final class Scheduler {
      * @throws NullPointerException If the provided callback is null.
      */
     public static @NotNull Schedule interval(double seconds, @NotNull Callback callback) {
+        return interval(seconds, Priority.NORMAL, callback);
+    }
+    /**
+     * Schedules a task to be run multiple times on an interval.
+     * @param seconds Delay in seconds to wait before and between executions.
+     * @param priority Priority class of the task.
+     * @param callback Task callback to invoke.
+     * @return Newly created task schedule.
+     * @throws IllegalArgumentException If the provided delay is invalid.
+     * @throws NullPointerException If the provided priority or callback is null.
+     */
+    public static @NotNull Schedule interval(double seconds, @NotNull Priority priority, @NotNull Callback callback) {
+        if (priority == null) throw new NullPointerException("Argument 'priority'");
         if (callback == null) throw new NullPointerException("Argument 'callback'");
         long ns = timeConvert(seconds);
-        return new Task(callback, timeNow() + ns, ns).schedule();
+        return new Task(callback, priority, timeNow() + ns, ns).schedule();
+    }
+
+    /**
+     * Creates a reusable one-shot timer that is not yet scheduled. The timer
+     * can be armed again once it has run, without allocating a new task, but
+     * not once it has been cancelled.
+     * Used by {@link Async} to park suspended coroutines.
+     * @param priority Priority class of the timer.
+     * @param callback Task callback to invoke.
+     * @return Newly created timer schedule.
+     */
+    static @NotNull Schedule timer(@NotNull Priority priority, @NotNull Callback callback) {
+        return new Task(callback, priority, 0, -1);
+    }
+
+    /**
+     * Arms a timer created by {@link #timer(Priority, Callback)} to run as
+     * soon as possible.
+     * @return False if the timer was cancelled, in which case it was not
+     *   armed and a new timer must be created instead.
+     * @throws IllegalStateException If the timer is already armed.
+     */
+    static boolean armNow(@NotNull Schedule timer) {
+        return ((Task) timer).arm(-1);
+    }
+
+    /**
+     * Arms a timer created by {@link #timer(Priority, Callback)} to run after
+     * the given delay.
+     * @return False if the timer was cancelled, in which case it was not
+     *   armed and a new timer must be created instead.
+     * @throws IllegalArgumentException If the provided delay is invalid.
+     * @throws IllegalStateException If the timer is already armed.
+     */
+    static boolean armDelay(@NotNull Schedule timer, double seconds) {
+        return ((Task) timer).arm(timeNow() + timeConvert(seconds));
     }
 
 }
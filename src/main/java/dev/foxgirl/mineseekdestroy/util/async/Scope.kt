@@ -0,0 +1,115 @@
+package dev.foxgirl.mineseekdestroy.util.async
+
+/**
+ * Lifetime that owns the coroutines, [Scheduler] schedules and child scopes started under it.
+ * Cancelling a scope cancels all of them at once, parked coroutines are woken up with a [CanceledException].
+ */
+class Scope internal constructor(private val base: Lifetime, val name: String) : Lifetime() {
+
+    internal fun interface Child {
+        fun cancel(): Boolean
+    }
+
+    private val children = LinkedHashSet<Child>()
+
+    @Volatile private var cancelled = false
+
+    override val isCancelled get() = cancelled || base.isCancelled
+
+    override val scope: Scope get() = this
+
+    internal fun attach(child: Child): Boolean {
+        synchronized(children) {
+            if (cancelled) return false
+            children.add(child)
+            return true
+        }
+    }
+
+    internal fun detach(child: Child) {
+        synchronized(children) {
+            children.remove(child)
+        }
+    }
+
+    /**
+     * Cancels this scope and everything started under it, including child scopes.
+     * @return Number of coroutines, schedules and child scopes that were still live and have been cancelled.
+     */
+    fun cancel(): Int {
+        val snapshot = synchronized(children) {
+            if (cancelled) return 0
+            cancelled = true
+            children.toTypedArray().also { children.clear() }
+        }
+        base.scope?.detach(child)
+        var count = 0
+        for (child in snapshot) {
+            try {
+                if (child.cancel()) count++
+            } catch (cause: Throwable) {
+                Async.printThrowable(cause)
+            }
+        }
+        return count
+    }
+
+    private val child = Child {
+        val live = !cancelled
+        cancel()
+        live
+    }
+
+    init {
+        base.scope?.attach(child)
+    }
+
+    private class ScheduleChild(
+        private val scope: Scope,
+        private val callback: Scheduler.Callback,
+        private val once: Boolean,
+    ) : Child, Scheduler.Schedule, Scheduler.Callback {
+        lateinit var schedule: Scheduler.Schedule
+
+        override fun invoke(schedule: Scheduler.Schedule) {
+            if (once) scope.detach(this)
+            callback.invoke(this)
+        }
+
+        override fun cancel(): Boolean {
+            scope.detach(this)
+            return schedule.cancel()
+        }
+    }
+
+    private inline fun track(once: Boolean, callback: Scheduler.Callback, schedule: (Scheduler.Callback) -> Scheduler.Schedule): Scheduler.Schedule {
+        val child = ScheduleChild(this, callback, once)
+        child.schedule = schedule(child)
+        if (!attach(child)) child.schedule.cancel()
+        return child
+    }
+
+    /**
+     * Schedules a task owned by this scope to be run (once) as soon as possible, see [Scheduler.now].
+     */
+    @JvmOverloads
+    fun now(priority: Scheduler.Priority = Scheduler.Priority.NORMAL, callback: Scheduler.Callback) =
+        track(true, callback) { Scheduler.now(priority, it) }
+
+    /**
+     * Schedules a task owned by this scope to be run (once) at some time in the future, see [Scheduler.delay].
+     */
+    @JvmOverloads
+    fun delay(seconds: Double, priority: Scheduler.Priority = Scheduler.Priority.NORMAL, callback: Scheduler.Callback) =
+        track(true, callback) { Scheduler.delay(seconds, priority, it) }
+
+    /**
+     * Schedules a task owned by this scope to be run multiple times on an interval, see [Scheduler.interval].
+     */
+    @JvmOverloads
+    fun interval(seconds: Double, priority: Scheduler.Priority = Scheduler.Priority.NORMAL, callback: Scheduler.Callback) =
+        track(false, callback) { Scheduler.interval(seconds, priority, it) }
+
+    override fun toString() = "Scope(name='$name', isCancelled=$isCancelled, children=${synchronized(children) { children.size }})"
+
+}